@@ -2,17 +2,26 @@ package todolist.collaboration;
 
 import todolist.order.Task;
 import todolist.user.User;
+import todolist.user.Versions;
 import todolist.validation.Validation;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Collaboration {
 
     private final String name;
     private final User creator;
-    private List<User> users;
-    private List<Assignee> assigneeTasks;
+    // copy on write: readers iterate the list they got without locking,
+    // changes of one collaboration are serialized by the storage
+    private volatile List<User> users;
+    private volatile List<Assignee> assigneeTasks;
+    // built on first use, collaborations loaded by Gson start without it
+    private transient volatile Map<String, User> membersByName;
+    // a new one for every change of the members or the assigned tasks
+    private transient volatile long version;
     public Collaboration(String name, User creator) {
         this.name = name;
         users = new ArrayList<>();
@@ -21,12 +30,19 @@ public class Collaboration {
         addUser(creator);
     }
 
-    public void setUsers(List<User> users) {
+    public synchronized void setUsers(List<User> users) {
         this.users = users;
+        this.membersByName = null;
+        version = Versions.next();
     }
 
     public void setAssigneeTasks(List<Assignee> assigneeTasks) {
         this.assigneeTasks = assigneeTasks;
+        version = Versions.next();
+    }
+
+    public long getVersion() {
+        return Math.max(version, Versions.START);
     }
 
     public List<User> getUsers() {
@@ -51,15 +67,45 @@ public class Collaboration {
             return false;
         }
 
-        return users.stream().anyMatch(other -> other.equals(user));
+        User member = members().get(user.getUsername());
+        return !Validation.isObjNull(member) && member.equals(user);
     }
 
     public void addUser(User user) {
-        users.add(user);
+        List<User> updated = new ArrayList<>(users);
+        updated.add(user);
+        users = updated;
+        if (!Validation.isObjNull(user)) {
+            members().putIfAbsent(user.getUsername(), user);
+        }
+        version = Versions.next();
+    }
+
+    private Map<String, User> members() {
+        Map<String, User> members = membersByName;
+        if (!Validation.isObjNull(members)) {
+            return members;
+        }
+
+        synchronized (this) {
+            if (Validation.isObjNull(membersByName)) {
+                Map<String, User> built = new ConcurrentHashMap<>();
+                for (var member : users) {
+                    if (!Validation.isObjNull(member)) {
+                        built.putIfAbsent(member.getUsername(), member);
+                    }
+                }
+                membersByName = built;
+            }
+            return membersByName;
+        }
     }
 
     public void assignTask(User user, Task task) {
-        assigneeTasks.add(new Assignee(task, user));
+        List<Assignee> updated = new ArrayList<>(assigneeTasks);
+        updated.add(new Assignee(task, user));
+        assigneeTasks = updated;
+        version = Versions.next();
     }
 
 
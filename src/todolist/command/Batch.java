@@ -0,0 +1,84 @@
+package todolist.command;
+
+import todolist.exceptions.TaskAlreadyExistsException;
+import todolist.exceptions.TaskDoesNotExistException;
+import todolist.order.Task;
+import todolist.user.User;
+import todolist.validation.Validation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static todolist.command.CommandsList.ADD_TASK;
+import static todolist.command.CommandsList.DELETE_TASK;
+import static todolist.command.CommandsList.FINISH_TASK;
+import static todolist.command.CommandsList.UPDATE_TASK;
+
+// Task commands queued between batch and end-batch. They run together against the session's user
+// and are persisted once, a failing command restores the tasks the batch touched.
+class Batch {
+    static final int MAX_COMMANDS = 10_000;
+    private static final Set<String> COMMANDS = Set.of(ADD_TASK, UPDATE_TASK, DELETE_TASK, FINISH_TASK);
+    // every command of a batch names its task first
+    private static final int TASK_NAME = 0;
+
+    private final List<Command> commands = new ArrayList<>();
+    // task name -> the task before the batch, null if there was none
+    private final Map<String, Task> originals = new LinkedHashMap<>();
+    private final Map<String, Boolean> originallyCompleted = new LinkedHashMap<>();
+
+    static boolean accepts(Command cmd) {
+        return COMMANDS.contains(cmd.command()) && cmd.arguments().length > 0;
+    }
+
+    boolean isFull() {
+        return commands.size() >= MAX_COMMANDS;
+    }
+
+    int add(Command cmd) {
+        commands.add(cmd);
+        return commands.size();
+    }
+
+    List<Command> commands() {
+        return commands;
+    }
+
+    // names of the tasks the batch may change
+    Set<String> taskNames() {
+        return originals.keySet();
+    }
+
+    // called before the first command runs
+    void remember(User user) {
+        for (Command cmd : commands) {
+            String name = cmd.arguments()[TASK_NAME];
+            if (!originals.containsKey(name)) {
+                Task task = user.getTask(name);
+                originals.put(name, task);
+                originallyCompleted.put(name, !Validation.isObjNull(task) && task.getIsCompleted());
+            }
+        }
+    }
+
+    void rollback(User user) {
+        try {
+            for (var original : originals.entrySet()) {
+                if (!Validation.isObjNull(user.getTask(original.getKey()))) {
+                    user.deleteTask(original.getKey());
+                }
+
+                Task task = original.getValue();
+                if (!Validation.isObjNull(task)) {
+                    task.setIsCompleted(originallyCompleted.get(original.getKey()));
+                    user.addTask(task);
+                }
+            }
+        } catch (TaskAlreadyExistsException | TaskDoesNotExistException e) {
+            throw new IllegalStateException("failed to restore the tasks of " + user.getUsername(), e);
+        }
+    }
+}
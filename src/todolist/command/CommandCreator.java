@@ -1,36 +1,113 @@
 package todolist.command;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
+import static todolist.command.CommandsList.ADD_COLLABORATION;
+import static todolist.command.CommandsList.ADD_TASK;
+import static todolist.command.CommandsList.ADD_USER_TO_COLLABORATION;
+import static todolist.command.CommandsList.ASSIGN_TASK_COLLABORATION;
+import static todolist.command.CommandsList.BATCH;
+import static todolist.command.CommandsList.DELETE_COLLABORATION;
+import static todolist.command.CommandsList.DELETE_TASK;
+import static todolist.command.CommandsList.END_BATCH;
+import static todolist.command.CommandsList.FINISH_TASK;
+import static todolist.command.CommandsList.GET_TASK;
+import static todolist.command.CommandsList.LIST_COLLABORATIONS;
+import static todolist.command.CommandsList.LIST_DASHBOARD;
+import static todolist.command.CommandsList.LIST_TASKS;
+import static todolist.command.CommandsList.LIST_TASKS_COLLABORATIONS;
+import static todolist.command.CommandsList.LIST_USERS_COLLABORATIONS;
+import static todolist.command.CommandsList.LOGIN;
+import static todolist.command.CommandsList.LOGOUT;
+import static todolist.command.CommandsList.REGISTER;
+import static todolist.command.CommandsList.SUBSCRIBE;
+import static todolist.command.CommandsList.SYNC;
+import static todolist.command.CommandsList.UPDATE_TASK;
+
+// Tokens are separated by single spaces, the first one is the command and the rest are its arguments.
+// The UTF-8 bytes of a request are parsed where they are: a known command is matched without decoding it
+// and only the arguments become strings.
 public class CommandCreator {
-    private static List<String> getCommandArguments(String input) {
-        List<String> tokens = new ArrayList<>();
-        StringBuilder sb = new StringBuilder();
-
-        for (char c : input.toCharArray()) {
-            if (c == ' ') {
-                tokens.add(sb.toString());
-                sb.delete(0, sb.length());
-            } else if ( c != ' ') {
-                sb.append(c);
-            }
-        }
-        //lets not forget about last token that doesn't have space after it
-        tokens.add(sb.toString());
+    private static final byte SPACE = ' ';
+    private static final String[] NO_ARGUMENTS = new String[0];
+
+    private static final String[] COMMANDS = {
+        REGISTER, LOGIN, LOGOUT, ADD_TASK, UPDATE_TASK, DELETE_TASK, GET_TASK, FINISH_TASK,
+        LIST_TASKS, LIST_DASHBOARD, ADD_COLLABORATION, LIST_COLLABORATIONS, DELETE_COLLABORATION,
+        ADD_USER_TO_COLLABORATION, ASSIGN_TASK_COLLABORATION, LIST_TASKS_COLLABORATIONS,
+        LIST_USERS_COLLABORATIONS, BATCH, END_BATCH, SYNC, SUBSCRIBE
+    };
+    private static final byte[][] COMMANDS_BYTES = new byte[COMMANDS.length][];
 
-        return tokens;
+    static {
+        for (int i = 0; i < COMMANDS.length; i++) {
+            COMMANDS_BYTES[i] = COMMANDS[i].getBytes(StandardCharsets.UTF_8);
+        }
     }
 
     public static Command newCommand(String clientInput) {
-        final int command = 0;
-        final int beginArguments = 1;
-        List<String> tokens = CommandCreator.getCommandArguments(clientInput);
-        final int endArguments = tokens.size();
+        byte[] input = clientInput.getBytes(StandardCharsets.UTF_8);
+        return newCommand(input, 0, input.length);
+    }
+
+    // the request is input[offset, offset + length) without its line terminator
+    public static Command newCommand(byte[] input, int offset, int length) {
+        final int end = offset + length;
+        int commandEnd = indexOfSpace(input, offset, end);
+
+        String command = knownCommand(input, offset, commandEnd);
+        if (command == null) {
+            command = new String(input, offset, commandEnd - offset, StandardCharsets.UTF_8);
+        }
+
+        if (commandEnd == end) {
+            return new Command(command, NO_ARGUMENTS);
+        }
+
+        int argumentsCount = 0;
+        for (int i = commandEnd; i < end; i++) {
+            if (input[i] == SPACE) {
+                argumentsCount++;
+            }
+        }
+
+        String[] args = new String[argumentsCount];
+        int tokenStart = commandEnd + 1;
+        for (int i = 0; i < argumentsCount; i++) {
+            int tokenEnd = indexOfSpace(input, tokenStart, end);
+            args[i] = new String(input, tokenStart, tokenEnd - tokenStart, StandardCharsets.UTF_8);
+            tokenStart = tokenEnd + 1;
+        }
 
-        String[] args = tokens.subList(beginArguments, endArguments).toArray(new String[0]);
+        return new Command(command, args);
+    }
 
+    private static int indexOfSpace(byte[] input, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (input[i] == SPACE) {
+                return i;
+            }
+        }
+        return end;
+    }
 
-        return new Command(tokens.get(command), args);
+    // the CommandsList constant spelled by input[from, to), null for an unknown command
+    private static String knownCommand(byte[] input, int from, int to) {
+        for (int i = 0; i < COMMANDS_BYTES.length; i++) {
+            byte[] candidate = COMMANDS_BYTES[i];
+            if (candidate.length == to - from && equals(candidate, input, from)) {
+                return COMMANDS[i];
+            }
+        }
+        return null;
+    }
+
+    private static boolean equals(byte[] candidate, byte[] input, int from) {
+        for (int i = 0; i < candidate.length; i++) {
+            if (candidate[i] != input[from + i]) {
+                return false;
+            }
+        }
+        return true;
     }
-}
\ No newline at end of file
+}
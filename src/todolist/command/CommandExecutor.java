@@ -3,6 +3,7 @@ package todolist.command;
 
 
 import todolist.collaboration.Collaboration;
+import todolist.database.Guard;
 import todolist.database.Storage;
 import todolist.exceptions.CollaborationNotCreatorException;
 import todolist.exceptions.CollaborationNotExistException;
@@ -13,7 +14,12 @@ import todolist.exceptions.TaskDoesNotExistException;
 import todolist.exceptions.UserAlreadyExistsException;
 import todolist.exceptions.UserAlreadyLoggedException;
 import todolist.exceptions.UserDoesNotExistException;
+import todolist.order.Task;
 import todolist.order.TaskFactory;
+import todolist.response.Event;
+import todolist.response.Response;
+import todolist.response.ResponseCache;
+import todolist.response.ResponseCacheMetrics;
 import todolist.user.User;
 import todolist.validation.Validation;
 import todolist.messagesstatus.StatusMessages;
@@ -23,17 +29,20 @@ import java.nio.channels.SocketChannel;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 import static todolist.command.CommandsList.ADD_COLLABORATION;
 import static todolist.command.CommandsList.ADD_TASK;
 import static todolist.command.CommandsList.ADD_USER_TO_COLLABORATION;
 import static todolist.command.CommandsList.ASSIGN_TASK_COLLABORATION;
+import static todolist.command.CommandsList.BATCH;
 import static todolist.command.CommandsList.DELETE_COLLABORATION;
 import static todolist.command.CommandsList.DELETE_TASK;
+import static todolist.command.CommandsList.END_BATCH;
 import static todolist.command.CommandsList.FINISH_TASK;
 import static todolist.command.CommandsList.GET_TASK;
 import static todolist.command.CommandsList.LIST_COLLABORATIONS;
@@ -44,22 +53,53 @@ import static todolist.command.CommandsList.LIST_USERS_COLLABORATIONS;
 import static todolist.command.CommandsList.LOGIN;
 import static todolist.command.CommandsList.LOGOUT;
 import static todolist.command.CommandsList.REGISTER;
+import static todolist.command.CommandsList.SUBSCRIBE;
+import static todolist.command.CommandsList.SYNC;
 import static todolist.command.CommandsList.UPDATE_TASK;
 import static todolist.messagesstatus.StatusMessages.WARNING;
 import static todolist.validation.Validation.validString;
 
+// A Guard in try-with-resources only holds its locks for the block and is never referenced in it.
+@SuppressWarnings("try")
 public class CommandExecutor {
+    // rendered listings are cached up to this many bytes, 0 turns the cache off
+    private static final String RESPONSE_CACHE_PROPERTY = "todolist.responseCache.maxBytes";
+    private static final long DEFAULT_RESPONSE_CACHE_BYTES = 32L * 1024 * 1024;
+
     private final Storage database;
+    private final ResponseCache responseCache =
+            new ResponseCache(Long.getLong(RESPONSE_CACHE_PROPERTY, DEFAULT_RESPONSE_CACHE_BYTES));
+    private final Subscriptions subscriptions = new Subscriptions();
 
-    private User currentUser;
-    Map<SocketChannel, User> channelsForUsers = new HashMap<>();
+    // sessions of callers that identify their client by its channel only
+    private final Map<SocketChannel, Session> sessionsForChannels = new ConcurrentHashMap<>();
 
     public void addToChannelsForUsers(SocketChannel clientChannel, User user) {
-        channelsForUsers.put(clientChannel, user);
+        sessionFor(clientChannel).logIn(user);
     }
 
     public User getCurrentUser(SocketChannel clientChannel) {
-        return channelsForUsers.get(clientChannel);
+        Session session = sessionsForChannels.get(clientChannel);
+        return Validation.isObjNull(session) ? null : session.getUser();
+    }
+
+    private Session sessionFor(SocketChannel clientChannel) {
+        return sessionsForChannels.computeIfAbsent(clientChannel, Session::new);
+    }
+
+    // the client of the channel is gone, nothing of its session is kept and its user may log in again
+    public void disconnect(SocketChannel clientChannel) {
+        Session session = sessionsForChannels.remove(clientChannel);
+        if (!Validation.isObjNull(session)) {
+            session.logOut();
+        }
+        database.disconnect(clientChannel);
+    }
+
+    public void disconnect(Session session) {
+        subscriptions.unsubscribeAll(session);
+        session.logOut();
+        disconnect(session.getClientChannel());
     }
 
 
@@ -67,42 +107,124 @@ public class CommandExecutor {
         this.database = database;
     }
 
+    public CompletableFuture<Void> durabilityBarrier() {
+        return database.durabilityBarrier();
+    }
+
+    public ResponseCacheMetrics getResponseCacheMetrics() {
+        return responseCache.getMetrics();
+    }
+
     public String execute(SocketChannel clientChannel, Command cmd)
             throws TaskAlreadyExistsException, InvalidParametersException {
-        database.identifyChannel(clientChannel);
+        return execute(sessionFor(clientChannel), cmd);
+    }
+
+    public String execute(Session session, Command cmd)
+            throws TaskAlreadyExistsException, InvalidParametersException {
+        return respond(session, cmd).render();
+    }
 
-        if (!database.isItAccessible(clientChannel)) {
-            return switch (cmd.command()) {
+    public Response respond(SocketChannel clientChannel, Command cmd)
+            throws TaskAlreadyExistsException, InvalidParametersException {
+        return respond(sessionFor(clientChannel), cmd);
+    }
+
+    // keeps no state of its own between calls, sessions of different clients can execute concurrently;
+    // listings are rendered by the caller as it writes them out
+    public Response respond(Session session, Command cmd)
+            throws TaskAlreadyExistsException, InvalidParametersException {
+        if (!database.isItAccessible(session.getClientChannel())) {
+            return Response.of(switch (cmd.command()) {
                 case REGISTER -> registerUserCommand(cmd.arguments());
-                case LOGIN -> logInUserCommand(clientChannel, cmd.arguments());
+                case LOGIN -> logInUserCommand(session, cmd.arguments());
                 default -> WARNING.getMessage("Unknown command");
-            };
+            });
+        }
+        else if (!Validation.isObjNull(session.getBatch())) {
+            return Response.of(batchUserCommand(session, cmd));
         }
         else {
             return switch (cmd.command()) {
-                case REGISTER -> WARNING.getMessage(
-                        "Already in session! To register a new account logout of the current one");
-                case LOGIN -> WARNING.getMessage("Already in session ! You are already logged in!");
-                case ADD_TASK -> addTaskUserCommand(clientChannel, cmd.arguments());
-                case UPDATE_TASK -> updateTaskUserCommand(clientChannel, cmd.arguments());
-                case LIST_TASKS -> listTasksUserCommand(clientChannel, cmd.arguments());
-                case DELETE_TASK -> deleteTaskUserCommand(clientChannel, cmd.arguments());
-                case GET_TASK -> getTaskUserCommand(clientChannel, cmd.arguments());
-                case LIST_DASHBOARD -> listDashboardUserCommand(clientChannel);
-                case FINISH_TASK -> finishUserCommand(clientChannel, cmd.arguments());
-                case ADD_COLLABORATION -> addCollaborationUserCommand(clientChannel, cmd.arguments());
-                case LIST_COLLABORATIONS -> listCollaborationsUserCommand(clientChannel);
-                case ADD_USER_TO_COLLABORATION -> addUserToCollaborationUserCommand(clientChannel, cmd.arguments());
-                case DELETE_COLLABORATION -> deleteCollaborationUserCommand(clientChannel, cmd.arguments());
-                case ASSIGN_TASK_COLLABORATION -> assignTaskCollaborationsUserCommand( cmd.arguments());
-                case LIST_TASKS_COLLABORATIONS -> listTasksCollaborationsUserCommand( cmd.arguments());
-                case LIST_USERS_COLLABORATIONS -> listUsersCollaborationsUserCommand( cmd.arguments());
-                case LOGOUT -> logOutUserCommand(clientChannel);
-                default -> WARNING.getMessage("Unknown command");
+                case REGISTER -> Response.of(WARNING.getMessage(
+                        "Already in session! To register a new account logout of the current one"));
+                case LOGIN -> Response.of(WARNING.getMessage("Already in session ! You are already logged in!"));
+                case ADD_TASK -> Response.of(addTaskUserCommand(session, cmd.arguments()));
+                case UPDATE_TASK -> Response.of(updateTaskUserCommand(session, cmd.arguments()));
+                case LIST_TASKS -> cachedTasksListing(session, listing(cmd),
+                        () -> listTasksUserCommand(session, cmd.arguments()));
+                case DELETE_TASK -> Response.of(deleteTaskUserCommand(session, cmd.arguments()));
+                case GET_TASK -> Response.of(getTaskUserCommand(session, cmd.arguments()));
+                case LIST_DASHBOARD -> {
+                    LocalDate today = LocalDate.now();
+                    yield cachedTasksListing(session, LIST_DASHBOARD + " " + today,
+                            () -> listDashboardUserCommand(session, today));
+                }
+                case FINISH_TASK -> Response.of(finishUserCommand(session, cmd.arguments()));
+                case ADD_COLLABORATION -> Response.of(addCollaborationUserCommand(session, cmd.arguments()));
+                case LIST_COLLABORATIONS -> responseCache.get(
+                        LIST_COLLABORATIONS + " " + session.getUser().getUsername(), session.getUser(),
+                        database.collaborationsVersion(), () -> Response.of(listCollaborationsUserCommand(session)));
+                case ADD_USER_TO_COLLABORATION ->
+                        Response.of(addUserToCollaborationUserCommand(session, cmd.arguments()));
+                case DELETE_COLLABORATION -> Response.of(deleteCollaborationUserCommand(session, cmd.arguments()));
+                case ASSIGN_TASK_COLLABORATION -> Response.of(assignTaskCollaborationsUserCommand( cmd.arguments()));
+                case LIST_TASKS_COLLABORATIONS ->
+                        cachedCollaborationListing(cmd, () -> listTasksCollaborationsUserCommand( cmd.arguments()));
+                case LIST_USERS_COLLABORATIONS -> cachedCollaborationListing(
+                        cmd, () -> Response.of(listUsersCollaborationsUserCommand( cmd.arguments())));
+                case LOGOUT -> Response.of(logOutUserCommand(session));
+                case BATCH -> Response.of(startBatchUserCommand(session));
+                case END_BATCH -> Response.of(WARNING.getMessage("No batch has been started"));
+                case SYNC -> syncUserCommand(session, cmd.arguments());
+                case SUBSCRIBE -> Response.of(subscribeUserCommand(session, cmd.arguments()));
+                default -> Response.of(WARNING.getMessage("Unknown command"));
             };
         }
     }
 
+    // a listing of the user's tasks changes only with the version of the user
+    private Response cachedTasksListing(Session session, String listing,
+                                        ResponseCache.Renderer<RuntimeException> renderer) {
+        User currentUser = session.getUser();
+        return responseCache.get(
+                "user " + currentUser.getUsername() + " " + listing, currentUser, currentUser.getVersion(), renderer);
+    }
+
+    // listings of collaborations that do not exist are errors and are not cached
+    private Response cachedCollaborationListing(Command cmd, ResponseCache.Renderer<RuntimeException> renderer) {
+        final int collaborationName = 0;
+        Collaboration collaboration = cmd.arguments().length == 0 ? null
+                : database.getCollaboration(cmd.arguments()[collaborationName]);
+        if (Validation.isObjNull(collaboration)) {
+            return renderer.render();
+        }
+
+        return responseCache.get("collaboration " + collaboration.getName() + " " + listing(cmd),
+                collaboration, collaboration.getVersion(), renderer);
+    }
+
+    private static String listing(Command cmd) {
+        return cmd.command() + " " + String.join(" ", cmd.arguments());
+    }
+
+    private String executeTaskCommand(Session session, Command cmd) throws TaskAlreadyExistsException {
+        return switch (cmd.command()) {
+            case ADD_TASK -> addTaskUserCommand(session, cmd.arguments());
+            case UPDATE_TASK -> updateTaskUserCommand(session, cmd.arguments());
+            case DELETE_TASK -> deleteTaskUserCommand(session, cmd.arguments());
+            case FINISH_TASK -> finishUserCommand(session, cmd.arguments());
+            default -> WARNING.getMessage("Unknown command");
+        };
+    }
+
+    // inside a batch the changes are persisted together once every command of the batch succeeded
+    private void persistTask(Session session, User currentUser, String taskName) {
+        if (Validation.isObjNull(session.getBatch())) {
+            database.updateUserTask(currentUser, taskName);
+        }
+    }
+
 
 
     private String registerUserCommand(String[] args) {
@@ -123,7 +245,7 @@ public class CommandExecutor {
                 String.format("User %s has been added to the data base", args[username]));
     }
 
-    private String logInUserCommand(SocketChannel clientChannel, String[] args) {
+    private String logInUserCommand(Session session, String[] args) {
 
         if (!Validation.isObjNull(UserValidation.checkIfPassOrNameProvided(args))) {
             return UserValidation.checkIfPassOrNameProvided(args);
@@ -132,11 +254,8 @@ public class CommandExecutor {
         final int username = 0;
         final int password = 1;
 
-        //User currentUser;
-
         try {
-            currentUser = database.logIn(new User(args[username], args[password]), clientChannel);
-            addToChannelsForUsers(clientChannel, currentUser);
+            session.logIn(database.logIn(new User(args[username], args[password]), session.getClientChannel()));
         } catch (UserDoesNotExistException | UserAlreadyLoggedException e) {
             return e.getLocalizedMessage();
         }
@@ -144,24 +263,28 @@ public class CommandExecutor {
         return StatusMessages.SUCCESS.getMessage(String.format("User (%s) has logged in", args[username]));
     }
 
-    private String logOutUserCommand(SocketChannel clientChannel) {
-        database.logout(clientChannel, getCurrentUser(clientChannel));
+    private String logOutUserCommand(Session session) {
+        User currentUser = session.getUser();
+        database.logout(session.getClientChannel(), currentUser);
+        subscriptions.unsubscribeAll(session);
+        session.logOut();
         return StatusMessages.SUCCESS.getMessage(
-                String.format("User (%s) has logged off", getCurrentUser(clientChannel).getUsername()));
+                String.format("User (%s) has logged off", currentUser.getUsername()));
     }
 
-    private String addTaskUserCommand(SocketChannel clientChannel, String[] args)  {
+    private String addTaskUserCommand(Session session, String[] args)  {
 
         final int noArguments = 0;
         if (args.length == noArguments ) {
             return  StatusMessages.ERROR.getMessage("Name of a task must be provided");
         }
 
-        currentUser =  getCurrentUser(clientChannel);
+        User currentUser = session.getUser();
 
-        try  {
-            currentUser.addTask(TaskFactory.createTask(args));
-            database.updateUsersDatabase(currentUser);
+        try (Guard ignored = database.lockUser(currentUser)) {
+            Task task = TaskFactory.createTask(args);
+            currentUser.addTask(task);
+            persistTask(session, currentUser, task.getName());
         }
         catch (TaskAlreadyExistsException | DatePeriodException | InvalidParametersException e ) {
             return e.getLocalizedMessage();
@@ -171,53 +294,70 @@ public class CommandExecutor {
                 "Task has been added to (%s)'s list of tasks", currentUser.getUsername()));
     }
 
-    private String listTasksUserCommand(SocketChannel clientChannel, String[] args)  {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
+    private Response listTasksUserCommand(Session session, String[] args)  {
+        User currentUser = session.getUser();
         final int noSpecifiers = 0;
         final int specifier = 0;
         final int hasSpecifiers = 2;
+        final int hasRange = 3;
         final int parameter = 1;
+        final int rangeEnd = 2;
         if (args.length == noSpecifiers) {
-            return currentUser.listTasks();
+            return currentUser.tasksListing();
+        }
+        else if (args.length == hasRange && args[specifier].equals("range")) {
+            try {
+                LocalDate from = Validation.getDateInDateTime(args[parameter]);
+                LocalDate to = Validation.getDateInDateTime(args[rangeEnd]);
+                if (from.isAfter(to)) {
+                    return Response.of(
+                            StatusMessages.ERROR.getMessage("The beginning of the range must not be after its end"));
+                }
+
+                return currentUser.tasksInRangeListing(from, to);
+            }
+            catch (InvalidParametersException e) {
+                return Response.of(e.getLocalizedMessage());
+            }
         }
         else if (args.length == hasSpecifiers) {
             if (args[specifier].equals("completed")) {
                 if (args[parameter].equals("true")) {
-                    return currentUser.listTaskByCompletion(true);
+                    return currentUser.tasksByCompletionListing(true);
                 }
                 else  if (args[parameter].equals("false")) {
-                    return currentUser.listTaskByCompletion(false);
+                    return currentUser.tasksByCompletionListing(false);
                 }
                 else {
-                    return StatusMessages.ERROR.getMessage("Completed can only be followed by true or false parameter");
+                    return Response.of(StatusMessages.ERROR.getMessage(
+                            "Completed can only be followed by true or false parameter"));
                 }
             }
             else if (args[specifier].equals("date")) {
                 try {
 
-                    return currentUser.listDashboard(Validation.getDateInDateTime(args[1]));
+                    return currentUser.dashboardListing(Validation.getDateInDateTime(args[1]));
                 }
                 catch (InvalidParametersException e) {
-                    return e.getLocalizedMessage();
+                    return Response.of(e.getLocalizedMessage());
                 }
             }
             else {
-                return StatusMessages.ERROR.getMessage(
-                        "Unavailable specifiers has been used (you can list only by completion or date)");
+                return Response.of(StatusMessages.ERROR.getMessage(
+                        "Unavailable specifiers has been used (you can list only by completion or date)"));
             }
         }
 
-        return StatusMessages
-                .ERROR.getMessage("Undefined number of specifiers have been provided (only one is available)");
+        return Response.of(StatusMessages
+                .ERROR.getMessage("Undefined number of specifiers have been provided (only one is available)"));
     }
 
-    private String updateTaskUserCommand(SocketChannel clientChannel, String[] args) throws TaskAlreadyExistsException {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
-        try {
-            currentUser.updateTask(TaskFactory.createTask(args));
-            database.updateUsersDatabase(currentUser);
+    private String updateTaskUserCommand(Session session, String[] args) throws TaskAlreadyExistsException {
+        User currentUser = session.getUser();
+        try (Guard ignored = database.lockUser(currentUser)) {
+            Task task = TaskFactory.createTask(args);
+            currentUser.updateTask(task);
+            persistTask(session, currentUser, task.getName());
         }
         catch (TaskDoesNotExistException | DatePeriodException | InvalidParametersException e) {
             return e.getLocalizedMessage();
@@ -226,9 +366,8 @@ public class CommandExecutor {
                 "Task has been updated in (%s)'s list of tasks", currentUser.getUsername()));
     }
 
-    private String deleteTaskUserCommand(SocketChannel clientChannel, String[] args) {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
+    private String deleteTaskUserCommand(Session session, String[] args) {
+        User currentUser = session.getUser();
         final int noArguments = 0;
         final int taskName = 0;
         if (args.length == noArguments) {
@@ -239,9 +378,9 @@ public class CommandExecutor {
             return StatusMessages.ERROR.getMessage("Invalid arguments for deleting a task");
         }
 
-        try {
+        try (Guard ignored = database.lockUser(currentUser)) {
             currentUser.deleteTask(args[taskName]);
-            database.updateUsersDatabase(currentUser);
+            persistTask(session, currentUser, args[taskName]);
         }
         catch (TaskDoesNotExistException e) {
             return e.getLocalizedMessage();
@@ -251,9 +390,32 @@ public class CommandExecutor {
                 String.format("Task has been deleted from (%s)'s list of tasks", currentUser.getUsername()));
     }
 
-    private String getTaskUserCommand(SocketChannel clientChannel, String[] args) {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
+    // without a version, or with one from before the server started, every task is sent
+    private Response syncUserCommand(Session session, String[] args) {
+        final int noArguments = 0;
+        final int hasVersion = 1;
+        final int version = 0;
+        long since = 0;
+        if (args.length == hasVersion) {
+            try {
+                since = Long.parseLong(args[version]);
+            }
+            catch (NumberFormatException e) {
+                return Response.of(StatusMessages.ERROR.getMessage("The version to sync from must be a number"));
+            }
+        }
+        else if (args.length != noArguments) {
+            return Response.of(StatusMessages.ERROR.getMessage("Only the version to sync from can be provided"));
+        }
+
+        User currentUser = session.getUser();
+        try (Guard ignored = database.lockUser(currentUser)) {
+            return currentUser.changesSince(since);
+        }
+    }
+
+    private String getTaskUserCommand(Session session, String[] args) {
+        User currentUser = session.getUser();
         final int noArguments = 0;
         final int taskName = 0;
 
@@ -274,13 +436,12 @@ public class CommandExecutor {
 
     }
 
-    private String listDashboardUserCommand(SocketChannel clientChannel) throws InvalidParametersException {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
-        return currentUser.listDashboard(LocalDate.now());
+    private Response listDashboardUserCommand(Session session, LocalDate today) {
+        User currentUser = session.getUser();
+        return currentUser.dashboardListing(today);
     }
 
-    private String finishUserCommand(SocketChannel clientChannel, String[] args) throws TaskAlreadyExistsException {
+    private String finishUserCommand(Session session, String[] args) throws TaskAlreadyExistsException {
         final int noArguments = 0;
         final int taskName = 0;
 
@@ -292,12 +453,11 @@ public class CommandExecutor {
             return StatusMessages.ERROR.getMessage("Invalid arguments for finishing a task");
         }
 
-        //User
-        currentUser =  getCurrentUser(clientChannel);
+        User currentUser = session.getUser();
 
-        try {
+        try (Guard ignored = database.lockUser(currentUser)) {
             currentUser.finishTask(args[taskName]);
-            database.updateUsersDatabase(currentUser);
+            persistTask(session, currentUser, args[taskName]);
         }
         catch (TaskDoesNotExistException e) {
             return e.getLocalizedMessage();
@@ -307,9 +467,78 @@ public class CommandExecutor {
                 String.format("Task has been finished from (%s)'s list of tasks", currentUser.getUsername()));
     }
 
-    private String addCollaborationUserCommand(SocketChannel clientChannel, String[] args) {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
+    private String startBatchUserCommand(Session session) {
+        session.startBatch();
+        return StatusMessages.SUCCESS.getMessage(
+                "Batch has been started. Task commands are queued until end-batch");
+    }
+
+    private String batchUserCommand(Session session, Command cmd) throws TaskAlreadyExistsException {
+        Batch batch = session.getBatch();
+        if (cmd.command().equals(END_BATCH)) {
+            return endBatchUserCommand(session, batch);
+        }
+
+        if (!Batch.accepts(cmd)) {
+            return WARNING.getMessage("Only add-task, update-task, delete-task and finish-task with a task name "
+                    + "can be part of a batch, end it with end-batch first");
+        }
+
+        if (batch.isFull()) {
+            return WARNING.getMessage(String.format(
+                    "A batch holds at most %d commands, end it with end-batch", Batch.MAX_COMMANDS));
+        }
+
+        return StatusMessages.SUCCESS.getMessage(
+                String.format("Command %d has been added to the batch", batch.add(cmd)));
+    }
+
+    // all of the commands or none of them take effect, one record persists them together
+    private String endBatchUserCommand(Session session, Batch batch) throws TaskAlreadyExistsException {
+        User currentUser = session.getUser();
+        List<String> results = new ArrayList<>();
+
+        try (Guard ignored = database.lockUser(currentUser)) {
+            batch.remember(currentUser);
+            try {
+                for (Command cmd : batch.commands()) {
+                    String result = executeTaskCommand(session, cmd);
+                    results.add(result);
+
+                    if (!StatusMessages.SUCCESS.isStatusOf(result)) {
+                        batch.rollback(currentUser);
+                        return batchResult(StatusMessages.ERROR.getMessage(String.format(
+                                "Command %d of the batch failed, none of its changes have been made",
+                                results.size())), results);
+                    }
+                }
+            } catch (TaskAlreadyExistsException | RuntimeException e) {
+                batch.rollback(currentUser);
+                throw e;
+            } finally {
+                session.endBatch();
+            }
+
+            if (!results.isEmpty()) {
+                database.updateUserTasks(currentUser, batch.taskNames());
+            }
+        }
+
+        return batchResult(StatusMessages.SUCCESS.getMessage(
+                String.format("Batch of %d commands has been executed", results.size())), results);
+    }
+
+    private String batchResult(String status, List<String> results) {
+        StringBuilder result = new StringBuilder(status);
+        for (String commandResult : results) {
+            result.append(System.lineSeparator());
+            result.append(commandResult);
+        }
+        return result.toString();
+    }
+
+    private String addCollaborationUserCommand(Session session, String[] args) {
+        User currentUser = session.getUser();
         final int noArguments = 0;
         final int collaborationName = 0;
 
@@ -327,15 +556,15 @@ public class CommandExecutor {
                 "Collaboration has been created by (%s)", currentUser.getUsername()));
     }
 
-    private String listCollaborationsUserCommand(SocketChannel clientChannel) {
+    private String listCollaborationsUserCommand(Session session) {
 
-        currentUser =  getCurrentUser(clientChannel);
+        User currentUser = session.getUser();
 
         return database.listCollaboration(currentUser);
     }
 
-    private String addUserToCollaborationUserCommand(SocketChannel clientChannel, String[] args) {
-        currentUser =  getCurrentUser(clientChannel);
+    private String addUserToCollaborationUserCommand(Session session, String[] args) {
+        User currentUser = session.getUser();
         final int hasArguments = 2;
         final int collaborationName = 0;
         final int username = 1;
@@ -347,32 +576,34 @@ public class CommandExecutor {
             return StatusMessages.ERROR.getMessage("Invalid arguments for searching a collaboration");
         }
 
-        Collaboration collaboration = database.getCollaboration(args[collaborationName]);
-        User userToAdd = database.getCurrentUser(args[username]);
+        try (Guard ignored = database.lockCollaboration(args[collaborationName])) {
+            Collaboration collaboration = database.getCollaboration(args[collaborationName]);
+            User userToAdd = database.getCurrentUser(args[username]);
 
-        if (Validation.isObjNull(collaboration)) {
-            return StatusMessages.ERROR.getMessage("Provided collaboration does not exist in the database");
-        }
+            if (Validation.isObjNull(collaboration)) {
+                return StatusMessages.ERROR.getMessage("Provided collaboration does not exist in the database");
+            }
 
-        if (Validation.isObjNull(database.getCurrentUser(args[username]))) {
-            return StatusMessages.ERROR.getMessage("Provided user does not exist in the database");
-        }
+            if (Validation.isObjNull(database.getCurrentUser(args[username]))) {
+                return StatusMessages.ERROR.getMessage("Provided user does not exist in the database");
+            }
 
-        if (!database.getCollaboration(args[collaborationName]).hasUser(currentUser)) {
-            return StatusMessages.ERROR.getMessage("Provided user is not a part of this collaboration");
-        }
+            if (!database.getCollaboration(args[collaborationName]).hasUser(currentUser)) {
+                return StatusMessages.ERROR.getMessage("Provided user is not a part of this collaboration");
+            }
 
-        collaboration.addUser(userToAdd);
-        database.updateCollaborationsDatabase(collaboration);
+            collaboration.addUser(userToAdd);
+            database.updateCollaborationsDatabase(collaboration);
+            publish(collaboration, ADD_USER_TO_COLLABORATION, args[collaborationName], args[username]);
+        }
 
         return StatusMessages.SUCCESS.getMessage(
                 String.format(
                         "User (%s) has been added to collaboration (%s)", args[username], args[collaborationName]));
     }
 
-    private String deleteCollaborationUserCommand(SocketChannel clientChannel, String[] args) {
-        //User
-        currentUser =  getCurrentUser(clientChannel);
+    private String deleteCollaborationUserCommand(Session session, String[] args) {
+        User currentUser = session.getUser();
 
         final int collaborationName = 0;
         final int noArguments = 0;
@@ -384,9 +615,11 @@ public class CommandExecutor {
             return StatusMessages.ERROR.getMessage("Invalid arguments for deleting a collaboration");
         }
 
-        try {
+        try (Guard ignored = database.lockCollaboration(args[collaborationName])) {
+            Collaboration collaboration = database.getCollaboration(args[collaborationName]);
             database.deleteCollaboration(args[collaborationName], currentUser);
             database.updateUsersDatabase(currentUser);
+            publish(collaboration, DELETE_COLLABORATION, args[collaborationName]);
         } catch (CollaborationNotExistException | CollaborationNotCreatorException e) {
             return e.getLocalizedMessage();
         }
@@ -412,24 +645,25 @@ public class CommandExecutor {
             return StatusMessages.ERROR.getMessage("Invalid arguments for searching a collaboration");
         }
 
-        Collaboration collaboration = database.getCollaboration(args[collaborationName]);
-        User user = database.getCurrentUser(args[username]);
+        List<String> taskArguments = new ArrayList<>(Arrays.asList(args).subList(taskName, args.length));
 
-        if (Validation.isObjNull(collaboration)) {
-            return StatusMessages.ERROR.getMessage("Provided collaboration does not exist in the database");
-        }
+        try (Guard ignored = database.lockCollaboration(args[collaborationName])) {
+            Collaboration collaboration = database.getCollaboration(args[collaborationName]);
+            User user = database.getCurrentUser(args[username]);
 
-        if (!collaboration.hasUser(user)) {
-            return StatusMessages.ERROR.getMessage("Provided user is not a part of this collaboration");
-        }
+            if (Validation.isObjNull(collaboration)) {
+                return StatusMessages.ERROR.getMessage("Provided collaboration does not exist in the database");
+            }
 
-        List<String> taskArguments = new ArrayList<>(Arrays.asList(args).subList(taskName, args.length));
+            if (!collaboration.hasUser(user)) {
+                return StatusMessages.ERROR.getMessage("Provided user is not a part of this collaboration");
+            }
 
-        try {
             collaboration.assignTask(
                     user, TaskFactory.createTask(Arrays.copyOf(
                             taskArguments.toArray(), taskArguments.size(), String[].class)));
             database.updateCollaborationsDatabase(collaboration);
+            publish(collaboration, ASSIGN_TASK_COLLABORATION, args[collaborationName], args[username], args[taskName]);
 
         } catch (DatePeriodException | InvalidParametersException e) {
             return e.getLocalizedMessage();
@@ -441,22 +675,67 @@ public class CommandExecutor {
 
     }
 
-    private String listTasksCollaborationsUserCommand(String[] args) {
+    private String subscribeUserCommand(Session session, String[] args) {
+        final int hasArguments = 1;
+        final int collaborationName = 0;
+        if (args.length != hasArguments) {
+            return StatusMessages.ERROR.getMessage("Name of a collaboration must be provided");
+        }
+
+        if (!validString(args[collaborationName])) {
+            return StatusMessages.ERROR.getMessage("Invalid arguments for subscribing to a collaboration");
+        }
+
+        if (Validation.isObjNull(session.getEventSink())) {
+            return WARNING.getMessage("This client can not receive notifications");
+        }
+
+        Collaboration collaboration = database.getCollaboration(args[collaborationName]);
+        if (Validation.isObjNull(collaboration)) {
+            return StatusMessages.ERROR.getMessage("Provided collaboration does not exist in the database");
+        }
+
+        if (!collaboration.hasUser(session.getUser())) {
+            return StatusMessages.ERROR.getMessage("Provided user is not a part of this collaboration");
+        }
+
+        subscriptions.subscribe(args[collaborationName], session);
+        return StatusMessages.SUCCESS.getMessage(
+                String.format("Subscribed to the changes of collaboration (%s)", args[collaborationName]));
+    }
+
+    // the event is the command that made the change, it is pushed once the change is durable
+    private void publish(Collaboration collaboration, String... event) {
+        if (Validation.isObjNull(collaboration) || !subscriptions.hasSubscribers(collaboration.getName())) {
+            return;
+        }
+
+        Event published = new Event(String.join(" ", event));
+        database.durabilityBarrier().thenRun(() -> {
+            subscriptions.publish(collaboration, published);
+            if (event[0].equals(DELETE_COLLABORATION)) {
+                subscriptions.drop(collaboration.getName());
+            }
+        });
+    }
+
+    private Response listTasksCollaborationsUserCommand(String[] args) {
         final int noArguments = 0;
         final int collaborationName = 0;
 
         if (args.length == noArguments ) {
-            return  StatusMessages.ERROR.getMessage("Name of a collaboration must be provided");
+            return Response.of(StatusMessages.ERROR.getMessage("Name of a collaboration must be provided"));
         }
 
         if (!validString(args[collaborationName])) {
-            return StatusMessages.ERROR.getMessage("Invalid arguments for listing tasks from collaboration");
+            return Response.of(
+                    StatusMessages.ERROR.getMessage("Invalid arguments for listing tasks from collaboration"));
         }
 
         try {
             return database.listTaskCollaboration(args[collaborationName]);
         } catch (CollaborationNotExistException e) {
-            return e.getLocalizedMessage();
+            return Response.of(e.getLocalizedMessage());
         }
 
     }
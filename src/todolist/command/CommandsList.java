@@ -28,4 +28,12 @@ public class CommandsList {
 
     public static final String LIST_USERS_COLLABORATIONS = "list-users-collaboration";
 
+    public static final String BATCH = "batch";
+
+    public static final String END_BATCH = "end-batch";
+
+    public static final String SYNC = "sync";
+
+    public static final String SUBSCRIBE = "subscribe";
+
 }
@@ -0,0 +1,10 @@
+package todolist.command;
+
+import todolist.response.Event;
+
+// Where the events of a session's subscriptions go, set by the server that owns the session's connection.
+// Called by the threads that execute commands, it must only hand the event over.
+public interface EventSink {
+
+    void push(Event event);
+}
@@ -0,0 +1,73 @@
+package todolist.command;
+
+import todolist.user.User;
+
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The execution context of one client connection, handlers work only on the user of their session.
+public class Session {
+    private final SocketChannel clientChannel;
+    // set at login, cleared at logout
+    private volatile User user;
+    // the commands queued since batch, until end-batch
+    private Batch batch;
+    // null for clients that can not receive events
+    private volatile EventSink eventSink;
+    // names of the collaborations subscribed to, until logout
+    private final Set<String> subscriptions = ConcurrentHashMap.newKeySet();
+
+    public Session(SocketChannel clientChannel) {
+        this.clientChannel = clientChannel;
+    }
+
+    public SocketChannel getClientChannel() {
+        return clientChannel;
+    }
+
+    public User getUser() {
+        return user;
+    }
+
+    public EventSink getEventSink() {
+        return eventSink;
+    }
+
+    public void setEventSink(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
+    void logIn(User user) {
+        this.user = user;
+    }
+
+    void logOut() {
+        this.user = null;
+        this.batch = null;
+    }
+
+    Batch getBatch() {
+        return batch;
+    }
+
+    void startBatch() {
+        this.batch = new Batch();
+    }
+
+    void endBatch() {
+        this.batch = null;
+    }
+
+    void subscribed(String collaborationName) {
+        subscriptions.add(collaborationName);
+    }
+
+    List<String> clearSubscriptions() {
+        List<String> cleared = new ArrayList<>(subscriptions);
+        subscriptions.removeAll(cleared);
+        return cleared;
+    }
+}
@@ -0,0 +1,63 @@
+package todolist.command;
+
+import todolist.collaboration.Collaboration;
+import todolist.response.Event;
+import todolist.user.User;
+import todolist.validation.Validation;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sessions subscribed to the changes of collaborations.
+// An event reaches a subscriber only while it is logged in as a member of the collaboration.
+class Subscriptions {
+    // collaboration name -> sessions subscribed to it
+    private final Map<String, Set<Session>> subscribers = new ConcurrentHashMap<>();
+
+    void subscribe(String collaborationName, Session session) {
+        subscribers.computeIfAbsent(collaborationName, name -> ConcurrentHashMap.newKeySet()).add(session);
+        session.subscribed(collaborationName);
+    }
+
+    void unsubscribeAll(Session session) {
+        for (String collaborationName : session.clearSubscriptions()) {
+            subscribers.computeIfPresent(collaborationName, (name, sessions) -> {
+                sessions.remove(session);
+                return sessions.isEmpty() ? null : sessions;
+            });
+        }
+    }
+
+    // a collaboration without a name has no subscribers, publishing must not fail the command that changed it
+    boolean hasSubscribers(String collaborationName) {
+        return !subscribers.isEmpty() && !Validation.isObjNull(collaborationName)
+                && subscribers.containsKey(collaborationName);
+    }
+
+    void publish(Collaboration collaboration, Event event) {
+        if (!hasSubscribers(collaboration.getName())) {
+            return;
+        }
+
+        Set<Session> sessions = subscribers.get(collaboration.getName());
+        if (Validation.isObjNull(sessions)) {
+            return;
+        }
+
+        for (Session session : sessions) {
+            User user = session.getUser();
+            EventSink sink = session.getEventSink();
+            if (!Validation.isObjNull(user) && !Validation.isObjNull(sink) && collaboration.hasUser(user)) {
+                sink.push(event);
+            }
+        }
+    }
+
+    // the collaboration is gone, a new one with its name starts without subscribers
+    void drop(String collaborationName) {
+        if (!Validation.isObjNull(collaborationName)) {
+            subscribers.remove(collaborationName);
+        }
+    }
+}
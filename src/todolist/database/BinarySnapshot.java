@@ -0,0 +1,306 @@
+package todolist.database;
+
+import todolist.collaboration.Assignee;
+import todolist.collaboration.Collaboration;
+import todolist.exceptions.InvalidParametersException;
+import todolist.order.Task;
+import todolist.user.User;
+import todolist.validation.Validation;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// Compact snapshot read through a MappedByteBuffer.
+//
+// header     magic, version, user count, collaboration count, string count, reserved,
+//            offsets of the users, collaborations, string offset table and string data sections
+// users      username, password, dated tasks, inbox tasks
+// collabs    name, creator, members, assigned tasks (users are referenced by username and password)
+// offsets    one int per string, relative to the string data section
+// strings    length-prefixed UTF-8, every distinct string is stored once
+//
+// Strings are referenced by their index in the pool, NO_STRING stands for null.
+// Task dates are stored as epoch days (NO_DATE for none), version 1 snapshots kept them as strings.
+// A single mapping is limited to 2 GB, so is the snapshot.
+public final class BinarySnapshot {
+
+    static final int MAGIC = 0x54444C53; // "TDLS"
+    private static final int VERSION = 2;
+    private static final int STRING_DATES_VERSION = 1;
+    private static final int HEADER_SIZE = 56;
+    private static final int NO_STRING = -1;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+
+    private BinarySnapshot() {
+    }
+
+    public static boolean isBinarySnapshot(File file) {
+        if (file.length() < HEADER_SIZE) {
+            return false;
+        }
+
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            return input.readInt() == MAGIC;
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read " + file, e);
+        }
+    }
+
+    public static void write(File file, Collection<User> users, Collection<Collaboration> collaborations) {
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        long usersOffset;
+        long collaborationsOffset;
+        long stringTableOffset;
+        long stringDataOffset;
+
+        try (FileOutputStream fileOutput = new FileOutputStream(file);
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileOutput))) {
+            output.write(new byte[HEADER_SIZE]);
+
+            usersOffset = output.size();
+            for (User user : users) {
+                writeString(output, pool, user.getUsername());
+                writeString(output, pool, user.getPassword());
+                writeTasks(output, pool, user.getTasks());
+                writeTasks(output, pool, user.getInbox().getTasks());
+            }
+
+            collaborationsOffset = output.size();
+            for (Collaboration collaboration : collaborations) {
+                writeString(output, pool, collaboration.getName());
+                writeUser(output, pool, collaboration.getCreator());
+                output.writeInt(collaboration.getUsers().size());
+                for (User member : collaboration.getUsers()) {
+                    writeUser(output, pool, member);
+                }
+                output.writeInt(collaboration.getAssigneeTasks().size());
+                for (Assignee assignee : collaboration.getAssigneeTasks()) {
+                    writeTask(output, pool, assignee.task());
+                    writeUser(output, pool, assignee.user());
+                }
+            }
+
+            List<byte[]> strings = new ArrayList<>(pool.size());
+            pool.keySet().forEach(string -> strings.add(string.getBytes(StandardCharsets.UTF_8)));
+
+            stringTableOffset = output.size();
+            int relativeOffset = 0;
+            for (byte[] string : strings) {
+                output.writeInt(relativeOffset);
+                relativeOffset += Integer.BYTES + string.length;
+            }
+
+            stringDataOffset = output.size();
+            for (byte[] string : strings) {
+                output.writeInt(string.length);
+                output.write(string);
+            }
+
+            output.flush();
+            fileOutput.getChannel().force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write " + file, e);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putInt(users.size())
+                    .putInt(collaborations.size())
+                    .putInt(pool.size())
+                    .putInt(0)
+                    .putLong(usersOffset)
+                    .putLong(collaborationsOffset)
+                    .putLong(stringTableOffset)
+                    .putLong(stringDataOffset)
+                    .flip();
+            while (header.hasRemaining()) {
+                channel.write(header);
+            }
+            channel.force(true);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write header of " + file, e);
+        }
+    }
+
+    public static void read(File file, Consumer<User> users, Consumer<Collaboration> collaborations) {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            new Reader(buffer).read(users, collaborations);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to read " + file, e);
+        }
+    }
+
+    private static void writeTasks(DataOutputStream output, Map<String, Integer> pool, Set<Task> tasks)
+            throws IOException {
+        output.writeInt(tasks.size());
+        for (Task task : tasks) {
+            writeTask(output, pool, task);
+        }
+    }
+
+    private static void writeTask(DataOutputStream output, Map<String, Integer> pool, Task task)
+            throws IOException {
+        writeString(output, pool, task.getName());
+        writeDate(output, task.getDate());
+        writeDate(output, task.getDueDate());
+        writeString(output, pool, task.getDescription());
+        output.writeBoolean(task.getIsCompleted());
+    }
+
+    private static void writeUser(DataOutputStream output, Map<String, Integer> pool, User user)
+            throws IOException {
+        writeString(output, pool, user.getUsername());
+        writeString(output, pool, user.getPassword());
+    }
+
+    private static void writeDate(DataOutputStream output, LocalDate date) throws IOException {
+        output.writeInt(date == null ? NO_DATE : Math.toIntExact(date.toEpochDay()));
+    }
+
+    private static void writeString(DataOutputStream output, Map<String, Integer> pool, String string)
+            throws IOException {
+        output.writeInt(string == null ? NO_STRING : pool.computeIfAbsent(string, added -> pool.size()));
+    }
+
+    private static class Reader {
+
+        private final MappedByteBuffer buffer;
+        private final int version;
+        private final int stringTableOffset;
+        private final int stringDataOffset;
+        private final String[] strings;
+        private final int userCount;
+        private final int collaborationCount;
+        private final int usersOffset;
+        private final int collaborationsOffset;
+        private final Map<String, User> usersByName = new HashMap<>();
+
+        Reader(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            version = buffer.getInt(Integer.BYTES);
+            if (buffer.getInt(0) != MAGIC || (version != VERSION && version != STRING_DATES_VERSION)) {
+                throw new IllegalStateException("Unsupported snapshot format");
+            }
+
+            userCount = buffer.getInt(8);
+            collaborationCount = buffer.getInt(12);
+            strings = new String[buffer.getInt(16)];
+            usersOffset = (int) buffer.getLong(24);
+            collaborationsOffset = (int) buffer.getLong(32);
+            stringTableOffset = (int) buffer.getLong(40);
+            stringDataOffset = (int) buffer.getLong(48);
+        }
+
+        void read(Consumer<User> users, Consumer<Collaboration> collaborations) {
+            buffer.position(usersOffset);
+            for (int i = 0; i < userCount; i++) {
+                User user = new User(readString(), readString());
+                user.setTasks(readTasks(new HashSet<>()));
+                readTasks(user.getInbox().getTasks());
+
+                usersByName.put(user.getUsername(), user);
+                users.accept(user);
+            }
+
+            buffer.position(collaborationsOffset);
+            for (int i = 0; i < collaborationCount; i++) {
+                Collaboration collaboration = new Collaboration(readString(), readUser());
+
+                List<User> members = new ArrayList<>();
+                int memberCount = buffer.getInt();
+                for (int j = 0; j < memberCount; j++) {
+                    members.add(readUser());
+                }
+                collaboration.setUsers(members);
+
+                List<Assignee> assignees = new ArrayList<>();
+                int assigneeCount = buffer.getInt();
+                for (int j = 0; j < assigneeCount; j++) {
+                    Task task = readTask();
+                    assignees.add(new Assignee(task, readUser()));
+                }
+                collaboration.setAssigneeTasks(assignees);
+
+                collaborations.accept(collaboration);
+            }
+        }
+
+        private Set<Task> readTasks(Set<Task> into) {
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                into.add(readTask());
+            }
+            return into;
+        }
+
+        private Task readTask() {
+            Task task = Task.builder(readString())
+                    .setDate(readDate())
+                    .setDueDate(readDate())
+                    .setDescription(readString())
+                    .build();
+            task.setIsCompleted(buffer.get() != 0);
+            return task;
+        }
+
+        // members share the loaded user objects, unknown users get a detached copy
+        private User readUser() {
+            String username = readString();
+            String password = readString();
+            User user = usersByName.get(username);
+            return user != null ? user : new User(username, password);
+        }
+
+        private LocalDate readDate() {
+            if (version == STRING_DATES_VERSION) {
+                String date = readString();
+                try {
+                    return date == null ? null : Validation.getDateInDateTime(date);
+                } catch (InvalidParametersException e) {
+                    throw new IllegalStateException("Invalid task date in snapshot: " + date, e);
+                }
+            }
+
+            int epochDay = buffer.getInt();
+            return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+        }
+
+        private String readString() {
+            int index = buffer.getInt();
+            if (index == NO_STRING) {
+                return null;
+            }
+
+            if (strings[index] == null) {
+                int position = stringDataOffset + buffer.getInt(stringTableOffset + index * Integer.BYTES);
+                byte[] bytes = new byte[buffer.getInt(position)];
+                buffer.get(position + Integer.BYTES, bytes);
+                strings[index] = new String(bytes, StandardCharsets.UTF_8);
+            }
+            return strings[index];
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package todolist.database;
+
+public class CompactionMetrics {
+
+    private long compactions;
+    private long lastDurationMillis;
+    private long totalDurationMillis;
+    private long lastBytesReclaimed;
+    private long totalBytesReclaimed;
+
+    public synchronized void record(long durationMillis, long bytesReclaimed) {
+        compactions++;
+        lastDurationMillis = durationMillis;
+        totalDurationMillis += durationMillis;
+        lastBytesReclaimed = bytesReclaimed;
+        totalBytesReclaimed += bytesReclaimed;
+    }
+
+    public synchronized long getCompactions() {
+        return compactions;
+    }
+
+    public synchronized long getLastDurationMillis() {
+        return lastDurationMillis;
+    }
+
+    public synchronized long getTotalDurationMillis() {
+        return totalDurationMillis;
+    }
+
+    public synchronized long getLastBytesReclaimed() {
+        return lastBytesReclaimed;
+    }
+
+    public synchronized long getTotalBytesReclaimed() {
+        return totalBytesReclaimed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("compactions=%d lastDurationMillis=%d totalDurationMillis=%d " +
+                        "lastBytesReclaimed=%d totalBytesReclaimed=%d",
+                compactions, lastDurationMillis, totalDurationMillis, lastBytesReclaimed, totalBytesReclaimed);
+    }
+}
@@ -0,0 +1,33 @@
+package todolist.database;
+
+// compaction runs when any of the limits is reached,
+// a limit of zero or less is switched off
+public record CompactionPolicy(long maxLogBytes, long maxLogRecords, long intervalSeconds) {
+
+    public static final CompactionPolicy DISABLED = new CompactionPolicy(0, 0, 0);
+
+    private static final long DEFAULT_MAX_LOG_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_MAX_LOG_RECORDS = 100_000;
+    private static final long DEFAULT_INTERVAL_SECONDS = 600;
+
+    public static CompactionPolicy fromSystemProperties() {
+        return new CompactionPolicy(
+                Long.getLong("todolist.compaction.maxBytes", DEFAULT_MAX_LOG_BYTES),
+                Long.getLong("todolist.compaction.maxRecords", DEFAULT_MAX_LOG_RECORDS),
+                Long.getLong("todolist.compaction.intervalSeconds", DEFAULT_INTERVAL_SECONDS));
+    }
+
+    public boolean isEnabled() {
+        return maxLogBytes > 0 || maxLogRecords > 0 || intervalSeconds > 0;
+    }
+
+    public boolean isDue(long logBytes, long logRecords, long secondsSinceLastCompaction) {
+        if (logRecords == 0) {
+            return false;
+        }
+
+        return (maxLogBytes > 0 && logBytes >= maxLogBytes) ||
+               (maxLogRecords > 0 && logRecords >= maxLogRecords) ||
+               (intervalSeconds > 0 && secondsSinceLastCompaction >= intervalSeconds);
+    }
+}
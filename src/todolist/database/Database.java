@@ -2,81 +2,143 @@ package todolist.database;
 
 import todolist.collaboration.Collaboration;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
 import todolist.exceptions.CollaborationNotCreatorException;
 import todolist.exceptions.CollaborationNotExistException;
 import todolist.exceptions.UserAlreadyExistsException;
 import todolist.exceptions.UserAlreadyLoggedException;
 import todolist.exceptions.UserDoesNotExistException;
+import todolist.order.Task;
+import todolist.response.Response;
+import todolist.response.TaskListing;
 import todolist.user.User;
 import todolist.validation.Validation;
 import todolist.messagesstatus.StatusMessages;
 import todolist.user.UserValidation;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.Type;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Reads take no locks: the indexes are concurrent maps and collaborations are copied on write.
+// In WAL mode mutations of different users, and of different collaborations, run in parallel under
+// striped locks. A collaboration lock is always taken before user locks. In SNAPSHOT mode every mutation
+// rewrites the whole dataset, so all of them share one lock.
+// A Guard in try-with-resources only holds its locks for the block and is never referenced in it.
+@SuppressWarnings("try")
 public class Database implements Storage {
 
     private static final String FILE_DATABASE = "database.txt";
+    private static final int LOCK_STRIPES = 64;
     private final Gson gson = new Gson();
     private File file = new File(FILE_DATABASE);
+    private final PersistenceMode persistenceMode;
+    private final CompactionPolicy compactionPolicy;
+    private final DurabilityPolicy durabilityPolicy;
+    private final SnapshotFormat snapshotFormat = SnapshotFormat.fromSystemProperty();
+    private WriteAheadLog log;
+    private SnapshotCompactor compactor;
+    private final StripedLocks userLocks = new StripedLocks(LOCK_STRIPES);
+    private final StripedLocks collaborationLocks = new StripedLocks(LOCK_STRIPES);
+    private final ReentrantLock registrationLock = new ReentrantLock();
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+    // in registration order, guarded by the registration lock
     private List<User> users;
-    private List<Collaboration> collaborations;
-    private Map<SocketChannel, Boolean> channelsKeysForSessions = new HashMap<>();
-    private Map<User, Boolean> keysForLoggedUsers = new HashMap<>();
+    private Map<String, User> usersByName;
+    // passwords must be unique as well, see UserValidation
+    private Set<String> passwords;
+    // by name
+    private Map<String, Collaboration> collaborations;
+    // username -> the collaborations the user is a member of, by name in creation order,
+    // the inner maps are replaced rather than changed
+    private Map<String, Map<String, Collaboration>> collaborationsByMember;
+    private final AtomicLong collaborationsVersion = new AtomicLong();
     // the key to use the systems features
-    // is only allowed as a logged-in user
+    // is only allowed as a logged-in user:
+    // a channel is here only while a user is logged in through it, disconnecting removes it
+    private final Map<SocketChannel, User> usersForChannels = new ConcurrentHashMap<>();
+    // users holding their login slot, one channel per user at a time
+    private final Set<User> loggedUsers = ConcurrentHashMap.newKeySet();
 
     public static Database getInstance() {
         return INSTANCE;
     }
 
     public static Database getInstanceWithCustomFile(File file) {
-        return new Database(file);
+        return new Database(file, PersistenceMode.fromSystemProperty(),
+                CompactionPolicy.fromSystemProperties(), DurabilityPolicy.fromSystemProperties());
     }
 
+    public static Database getInstanceWithCustomFile(File file, PersistenceMode persistenceMode) {
+        return new Database(file, persistenceMode,
+                CompactionPolicy.fromSystemProperties(), DurabilityPolicy.fromSystemProperties());
+    }
 
+    public static Database getInstanceWithCustomFile(File file, PersistenceMode persistenceMode,
+                                                     CompactionPolicy compactionPolicy) {
+        return new Database(file, persistenceMode, compactionPolicy, DurabilityPolicy.fromSystemProperties());
+    }
 
-    @Override
-    public List<User> getUsers() {
-        return users;
+    public static Database getInstanceWithCustomFile(File file, PersistenceMode persistenceMode,
+                                                     CompactionPolicy compactionPolicy,
+                                                     DurabilityPolicy durabilityPolicy) {
+        return new Database(file, persistenceMode, compactionPolicy, durabilityPolicy);
+    }
+
+    // null unless the database persists through the write-ahead log
+    public SnapshotCompactor getCompactor() {
+        return compactor;
     }
 
+    // stops the compactor and writes out and closes the log, the database is not used afterwards
+    public void close() {
+        if (compactor != null) {
+            compactor.close();
+        }
+        if (log != null) {
+            log.close();
+        }
+    }
+
+
+
     @Override
-    public void identifyChannel(SocketChannel clientChannel) {
-        channelsKeysForSessions.putIfAbsent(clientChannel, false);
+    public List<User> getUsers() {
+        try (Guard ignored = lockRegistration()) {
+            return new ArrayList<>(users);
+        }
     }
 
     @Override
     public boolean isItAccessible(SocketChannel clientSocket) {
-        return channelsKeysForSessions.get(clientSocket);
+        return usersForChannels.containsKey(clientSocket);
     }
 
 
     //users
     @Override
     public boolean register(User user) throws UserAlreadyExistsException {
-        if (UserValidation.checkIfUserExistsInDatabase(this, user)) {
-            throw new UserAlreadyExistsException(StatusMessages.ERROR.getMessage(String.format(
-                    "User (%s) already exists or the (%s) password is not safe",
-                    user.getUsername(), user.getPassword())));
-        }
+        try (Guard ignored = lockRegistration()) {
+            if (UserValidation.checkIfUserExistsInDatabase(this, user)) {
+                throw new UserAlreadyExistsException(StatusMessages.ERROR.getMessage(String.format(
+                        "User (%s) already exists or the (%s) password is not safe",
+                        user.getUsername(), user.getPassword())));
+            }
 
-        users.add(user);
-        keysForLoggedUsers.put(user, false);
+            users.add(user);
+            indexUser(user);
 
-        addUsersAndCollaborationsToFile();
+            persist(LogRecord.Operation.REGISTER_USER, user);
+        }
         return true;
     }
 
@@ -92,55 +154,88 @@ public class Database implements Storage {
 
         }
 
-        if (keysForLoggedUsers.get(getCurrentUser(user.getUsername()))) {
+        User registered = getCurrentUser(user.getUsername());
+        if (!loggedUsers.add(registered)) {
             throw new UserAlreadyLoggedException(
                     StatusMessages.WARNING.getMessage(String.format(
                     "User (%s) is already logged in. Wait until the user has logged off to use this account",
                     user.getUsername())));
         }
 
-        channelsKeysForSessions.put(clientSocket, true); // logging in the system !
-        keysForLoggedUsers.put( getCurrentUser(user.getUsername()), true);
-        return getCurrentUser(user.getUsername());
+        usersForChannels.put(clientSocket, registered); // logging in the system !
+        return registered;
     }
 
     @Override
     public boolean logout(SocketChannel clientSocket, User user) {
 
-        channelsKeysForSessions.put(clientSocket, false);
-        keysForLoggedUsers.put( user, false);
+        usersForChannels.remove(clientSocket);
+        loggedUsers.remove(user);
         return true;
     }
 
+    @Override
+    public void disconnect(SocketChannel clientSocket) {
+        User user = usersForChannels.remove(clientSocket);
+        if (!Validation.isObjNull(user)) {
+            loggedUsers.remove(user);
+        }
+    }
+
     @Override
     public void updateUsersDatabase(User updatedUser) {
-        for (var user : users ) {
-            if (user.equals(updatedUser)) {
+        try (Guard ignored = lockUser(updatedUser)) {
+            User user = getCurrentUser(updatedUser.getUsername());
+            if (!Validation.isObjNull(user) && user != updatedUser && user.equals(updatedUser)) {
                 user.setTasks(updatedUser.getTasks());
                 user.setInbox(updatedUser.getInbox());
-                break;
             }
+            persist(LogRecord.Operation.UPDATE_USER, updatedUser);
+        }
+    }
+
+    @Override
+    public void updateUserTask(User user, String taskName) {
+        try (Guard ignored = lockUser(user)) {
+            Task task = user.getTask(taskName);
+            persist(Validation.isObjNull(task) ? LogRecord.Operation.DELETE_TASK : LogRecord.Operation.PUT_TASK,
+                    new TaskChange(user.getUsername(), taskName, task));
+        }
+    }
+
+    @Override
+    public void updateUserTasks(User user, Collection<String> taskNames) {
+        try (Guard ignored = lockUser(user)) {
+            List<TaskChange> changes = new ArrayList<>(taskNames.size());
+            for (String taskName : taskNames) {
+                changes.add(new TaskChange(user.getUsername(), taskName, user.getTask(taskName)));
+            }
+            persist(LogRecord.Operation.UPDATE_TASKS, changes);
         }
-        addUsersAndCollaborationsToFile();
     }
 
     @Override
     public void updateCollaborationsDatabase(Collaboration updatedCollaboration) {
-        for (var collaboration : collaborations ) {
-            if (collaboration.equals(updatedCollaboration)) {
+        try (Guard ignored = lockCollaboration(updatedCollaboration.getName())) {
+            Collaboration collaboration = collaborations.get(updatedCollaboration.getName());
+            if (!Validation.isObjNull(collaboration)) {
+                unindexMembers(collaboration);
                 collaboration.setAssigneeTasks(updatedCollaboration.getAssigneeTasks());
                 collaboration.setUsers(updatedCollaboration.getUsers());
-                break;
+                indexMembers(collaboration);
             }
+            collaborationsVersion.incrementAndGet();
+            persistCollaboration(LogRecord.Operation.UPDATE_COLLABORATION, updatedCollaboration);
         }
-        addUsersAndCollaborationsToFile();
     }
 
 
     @Override
     public boolean addCollaboration(Collaboration collaboration) {
-        collaborations.add(collaboration);
-        addUsersAndCollaborationsToFile();
+        try (Guard ignored = lockCollaboration(collaboration.getName())) {
+            putCollaboration(collaboration);
+            persistCollaboration(LogRecord.Operation.ADD_COLLABORATION, collaboration);
+        }
 
         return true;
     }
@@ -151,7 +246,7 @@ public class Database implements Storage {
         result.append(System.lineSeparator());
 
         int counter = 0;
-        for (var collaboration : collaborations) {
+        for (var collaboration : collaborationsByMember.getOrDefault(user.getUsername(), Map.of()).values()) {
             if (collaboration.hasUser(user)) {
                 result.append(collaboration.getName());
                 result.append(System.lineSeparator());
@@ -167,50 +262,56 @@ public class Database implements Storage {
         }
     }
 
+    @Override
+    public long collaborationsVersion() {
+        return collaborationsVersion.get();
+    }
+
     @Override
     public boolean deleteCollaboration(String collaborationName, User currentUser)
             throws CollaborationNotExistException, CollaborationNotCreatorException {
 
-        if (Validation.isObjNull(getCollaboration(collaborationName))) {
-            throw new CollaborationNotExistException(StatusMessages.ERROR.getMessage(String.format(
-                    "Collaboration (%s) does not exist in database", collaborationName)));
-        }
+        try (Guard ignored = lockCollaboration(collaborationName)) {
+            Collaboration collaboration = getCollaboration(collaborationName);
+            if (Validation.isObjNull(collaboration)) {
+                throw new CollaborationNotExistException(StatusMessages.ERROR.getMessage(String.format(
+                        "Collaboration (%s) does not exist in database", collaborationName)));
+            }
 
-        if (!getCollaboration(collaborationName).getCreator().equals(currentUser)) {
-            throw new CollaborationNotCreatorException(StatusMessages.ERROR.getMessage(String.format(
-                    " Only creator can delete collaboration (%s)", collaborationName)));
-        }
+            if (!collaboration.getCreator().equals(currentUser)) {
+                throw new CollaborationNotCreatorException(StatusMessages.ERROR.getMessage(String.format(
+                        " Only creator can delete collaboration (%s)", collaborationName)));
+            }
 
-        collaborations.remove(getCollaboration(collaborationName));
+            removeCollaboration(collaborationName);
+            persist(LogRecord.Operation.DELETE_COLLABORATION, collaborationName);
+        }
         return true;
     }
 
     @Override
     public Collaboration getCollaboration(String name)  {
-        return collaborations.stream().filter(other -> other.getName().equals(name)).findAny().orElse(null);
+        return collaborations.get(name);
     }
 
     @Override
-    public String listTaskCollaboration(String collaborationName) throws CollaborationNotExistException {
+    public Response listTaskCollaboration(String collaborationName) throws CollaborationNotExistException {
         Collaboration collaboration = getCollaboration(collaborationName);
         if (Validation.isObjNull(collaboration)) {
             throw new CollaborationNotExistException(StatusMessages.ERROR.getMessage(String.format(
                     "Collaboration (%s) does not exist in database", collaborationName)));
         }
-        StringBuilder result = new StringBuilder();
-        result.append(System.lineSeparator());
-        int counter = 0 ;
+
+        List<Task> tasks = new ArrayList<>();
         for (var assignee : collaboration.getAssigneeTasks()) {
-            result.append(assignee.task());
-            result.append(System.lineSeparator());
-            counter++;
+            tasks.add(assignee.task());
         }
 
-        if (counter != 0 ) {
-            return result.toString();
+        if (!tasks.isEmpty()) {
+            return new TaskListing().section(System.lineSeparator(), tasks, System.lineSeparator());
         }
         else {
-            return "The following collaboration has no tasks";
+            return Response.of("The following collaboration has no tasks");
         }
     }
 
@@ -244,34 +345,165 @@ public class Database implements Storage {
     //side helpers
     @Override
     public User getCurrentUser(String username) {
-        return users.stream().filter(other->other.getUsername().equals(username)).findAny().orElse(null);
+        return usersByName.get(username);
     }
 
-    private void addUsersAndCollaborationsToFile() {
-        String userJson = gson.toJson(users);
-        String collaborationJson = gson.toJson(collaborations);
-
-        try (FileWriter fr = new FileWriter(file, false)) {
-            try (BufferedWriter br = new BufferedWriter(fr)) {
-                br.write(userJson);
-                br.write(System.lineSeparator());
-                br.write(collaborationJson);
-            }
-            catch (IOException e) {
-                throw new RuntimeException(e);
+    @Override
+    public boolean isPasswordTaken(String password) {
+        return passwords.contains(password);
+    }
+
+    private void indexUser(User user) {
+        passwords.add(user.getPassword());
+        usersByName.put(user.getUsername(), user);
+    }
+
+    @Override
+    public Guard lockUser(User user) {
+        if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            return lockSnapshot();
+        }
+        return userLocks.lock(user.getUsername());
+    }
+
+    @Override
+    public Guard lockCollaboration(String collaborationName) {
+        if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            return lockSnapshot();
+        }
+        return collaborationLocks.lock(collaborationName);
+    }
+
+    private Guard lockRegistration() {
+        if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            return lockSnapshot();
+        }
+        registrationLock.lock();
+        return registrationLock::unlock;
+    }
+
+    private Guard lockSnapshot() {
+        snapshotLock.lock();
+        return snapshotLock::unlock;
+    }
+
+    @Override
+    public CompletableFuture<Void> durabilityBarrier() {
+        if (persistenceMode == PersistenceMode.WAL) {
+            return log.barrier();
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    private void persist(LogRecord.Operation operation, Object changed) {
+        if (persistenceMode == PersistenceMode.WAL) {
+            log.append(new LogRecord(operation, gson.toJsonTree(changed)));
+        }
+        else {
+            addUsersAndCollaborationsToFile();
+        }
+    }
+
+    // a collaboration record carries the tasks of its members, they must not change while it is written
+    private void persistCollaboration(LogRecord.Operation operation, Collaboration collaboration) {
+        if (persistenceMode == PersistenceMode.SNAPSHOT) {
+            persist(operation, collaboration);
+            return;
+        }
+
+        String[] members = collaboration.getUsers().stream()
+                .filter(member -> !Validation.isObjNull(member))
+                .map(User::getUsername)
+                .toArray(String[]::new);
+        try (Guard ignored = userLocks.lockAll(members)) {
+            persist(operation, collaboration);
+        }
+    }
+
+    private void apply(LogRecord record) {
+        switch (record.operation()) {
+            case REGISTER_USER, UPDATE_USER -> applyUser(gson.fromJson(record.payload(), User.class));
+            case PUT_TASK, DELETE_TASK -> applyTaskChange(gson.fromJson(record.payload(), TaskChange.class));
+            case UPDATE_TASKS -> {
+                for (TaskChange change : gson.fromJson(record.payload(), TaskChange[].class)) {
+                    applyTaskChange(change);
+                }
             }
+            case ADD_COLLABORATION, UPDATE_COLLABORATION ->
+                    putCollaboration(gson.fromJson(record.payload(), Collaboration.class));
+            case DELETE_COLLABORATION -> removeCollaboration(record.payload().getAsString());
         }
-        catch (IOException e) {
-            throw new RuntimeException(e);
+    }
+
+    private void applyUser(User loggedUser) {
+        User user = getCurrentUser(loggedUser.getUsername());
+        if (Validation.isObjNull(user)) {
+            users.add(loggedUser);
+            indexUser(loggedUser);
+            return;
+        }
+
+        user.setTasks(loggedUser.getTasks());
+        user.setInbox(loggedUser.getInbox());
+    }
+
+    private void applyTaskChange(TaskChange change) {
+        User user = getCurrentUser(change.username());
+        if (!Validation.isObjNull(user)) {
+            change.applyTo(user);
         }
+    }
 
+    private void putCollaboration(Collaboration collaboration) {
+        Collaboration replaced = collaborations.put(collaboration.getName(), collaboration);
+        if (!Validation.isObjNull(replaced)) {
+            unindexMembers(replaced);
+        }
+        indexMembers(collaboration);
+        collaborationsVersion.incrementAndGet();
+    }
+
+    private void removeCollaboration(String name) {
+        Collaboration removed = collaborations.remove(name);
+        if (!Validation.isObjNull(removed)) {
+            unindexMembers(removed);
+        }
+        collaborationsVersion.incrementAndGet();
+    }
+
+    private void indexMembers(Collaboration collaboration) {
+        for (var member : collaboration.getUsers()) {
+            collaborationsByMember.compute(member.getUsername(), (username, memberships) -> {
+                Map<String, Collaboration> updated = Validation.isObjNull(memberships)
+                        ? new LinkedHashMap<>() : new LinkedHashMap<>(memberships);
+                updated.put(collaboration.getName(), collaboration);
+                return updated;
+            });
+        }
+    }
+
+    private void unindexMembers(Collaboration collaboration) {
+        for (var member : collaboration.getUsers()) {
+            collaborationsByMember.computeIfPresent(member.getUsername(), (username, memberships) -> {
+                Map<String, Collaboration> updated = new LinkedHashMap<>(memberships);
+                updated.remove(collaboration.getName());
+                return updated.isEmpty() ? null : updated;
+            });
+        }
+    }
+
+    private void addUsersAndCollaborationsToFile() {
+        snapshotFormat.write(file, users, collaborations.values());
     }
 
 
     private void loadDataset() {
 
         users = new ArrayList<>();
-        collaborations = new ArrayList<>();
+        usersByName = new ConcurrentHashMap<>();
+        passwords = ConcurrentHashMap.newKeySet();
+        collaborations = new ConcurrentHashMap<>();
+        collaborationsByMember = new ConcurrentHashMap<>();
 
         try {
             file.createNewFile();
@@ -279,37 +511,42 @@ public class Database implements Storage {
             throw new RuntimeException(e);
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-
-            String usersLine = reader.readLine();
-            String collaborationsLine = reader.readLine();
-
-            Type typeUsers = new TypeToken<List<User>>() { }.getType();
-            Type typeCollaborations = new TypeToken<List<Collaboration>>() { }.getType();
+        SnapshotFormat.detect(file).read(file, user -> {
+            users.add(user);
+            indexUser(user);
+        }, this::putCollaboration, true);
 
-            if (usersLine != null) {
-                users = new Gson().fromJson(usersLine, typeUsers);
-            }
+        log = new WriteAheadLog(WriteAheadLog.logFileFor(file), durabilityPolicy);
+        int replayed = log.replay(this::apply);
 
-            if (collaborationsLine != null) {
-                collaborations = new Gson().fromJson(collaborationsLine, typeCollaborations);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+        // a log left over from WAL mode is folded into the snapshot
+        if (persistenceMode == PersistenceMode.SNAPSHOT && replayed != 0) {
+            addUsersAndCollaborationsToFile();
+            log.delete();
         }
 
-        for (var user  : users) {
-            keysForLoggedUsers.put(user, false);
+        if (persistenceMode == PersistenceMode.WAL) {
+            compactor = new SnapshotCompactor(file, log, compactionPolicy, snapshotFormat);
+            compactor.start();
         }
 
     }
-    private static final Database INSTANCE = new Database();
+    private static final Database INSTANCE = new Database(PersistenceMode.fromSystemProperty(),
+            CompactionPolicy.fromSystemProperties(), DurabilityPolicy.fromSystemProperties());
 
-    private Database(File file) {
+    private Database(File file, PersistenceMode persistenceMode, CompactionPolicy compactionPolicy,
+                     DurabilityPolicy durabilityPolicy) {
         this.file = file;
+        this.persistenceMode = persistenceMode;
+        this.compactionPolicy = compactionPolicy;
+        this.durabilityPolicy = durabilityPolicy;
         loadDataset();
     }
-    private Database() {
+    private Database(PersistenceMode persistenceMode, CompactionPolicy compactionPolicy,
+                     DurabilityPolicy durabilityPolicy) {
+        this.persistenceMode = persistenceMode;
+        this.compactionPolicy = compactionPolicy;
+        this.durabilityPolicy = durabilityPolicy;
         loadDataset();
     }
 
@@ -0,0 +1,132 @@
+package todolist.database;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Reads the dataset file (users array, then collaborations array) one record at a time,
+// so only the record being built is held in memory next to the objects already loaded.
+public class DatasetLoader {
+
+    private static final int PROGRESS_EVERY_RECORDS = 100_000;
+
+    private final Gson gson = new Gson();
+    private final File file;
+    private final boolean reportProgress;
+    private long records;
+    private long elapsedNanos;
+
+    public DatasetLoader(File file, boolean reportProgress) {
+        this.file = file;
+        this.reportProgress = reportProgress;
+    }
+
+    public long getRecords() {
+        return records;
+    }
+
+    public long getRecordsPerSecond() {
+        return elapsedNanos == 0 ? records : records * TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    public <U, C> void load(Class<U> userType, Consumer<U> users,
+                            Class<C> collaborationType, Consumer<C> collaborations) {
+        long start = System.nanoTime();
+        records = 0;
+
+        try (CountingReader counter = new CountingReader(
+                new BufferedReader(new FileReader(file, StandardCharsets.UTF_8)));
+             JsonReader reader = new JsonReader(counter)) {
+            // the two arrays are separate top-level values on separate lines
+            reader.setLenient(true);
+
+            readArray(reader, counter, userType, users, start);
+            readArray(reader, counter, collaborationType, collaborations, start);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to load " + file, e);
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+        if (reportProgress) {
+            System.out.printf("Loaded %d records from %s in %d ms (%d records/s)%n",
+                    records, file, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), getRecordsPerSecond());
+        }
+    }
+
+    private <T> void readArray(JsonReader reader, CountingReader counter, Class<T> type,
+                               Consumer<T> consumer, long start) throws IOException {
+        if (!hasArray(reader)) {
+            return;
+        }
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            consumer.accept(gson.fromJson(reader, type));
+            records++;
+
+            if (reportProgress && records % PROGRESS_EVERY_RECORDS == 0) {
+                reportProgress(counter.getCharacters(), start);
+            }
+        }
+        reader.endArray();
+    }
+
+    // an empty file or a file holding only the users array simply ends early
+    private boolean hasArray(JsonReader reader) throws IOException {
+        try {
+            return reader.peek() == JsonToken.BEGIN_ARRAY;
+        } catch (EOFException e) {
+            return false;
+        }
+    }
+
+    private void reportProgress(long characters, long start) {
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        System.out.printf("Loading %s: %d records, %d%% read, %d records/s%n",
+                file, records, characters * 100 / Math.max(1, file.length()),
+                records * TimeUnit.SECONDS.toNanos(1) / elapsed);
+    }
+
+    private static class CountingReader extends FilterReader {
+
+        private long characters;
+
+        CountingReader(Reader in) {
+            super(in);
+        }
+
+        long getCharacters() {
+            return characters;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read >= 0) {
+                characters++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                characters += read;
+            }
+            return read;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package todolist.database;
+
+public enum Durability {
+    // a mutation is acknowledged after the batch holding it has been fsynced
+    SYNC,
+    // a mutation is acknowledged after it has been written to the log,
+    // the log is fsynced every N milliseconds or every M records
+    BATCHED,
+    // a mutation is acknowledged as soon as it is queued for writing
+    ASYNC
+}
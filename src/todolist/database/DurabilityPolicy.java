@@ -0,0 +1,18 @@
+package todolist.database;
+
+public record DurabilityPolicy(Durability durability, long syncIntervalMillis, int syncEveryRecords) {
+
+    private static final long DEFAULT_SYNC_INTERVAL_MILLIS = 10;
+    private static final int DEFAULT_SYNC_EVERY_RECORDS = 1000;
+
+    public static DurabilityPolicy fromSystemProperties() {
+        return new DurabilityPolicy(
+                Durability.valueOf(System.getProperty("todolist.durability", Durability.BATCHED.name()).toUpperCase()),
+                Long.getLong("todolist.durability.syncIntervalMillis", DEFAULT_SYNC_INTERVAL_MILLIS),
+                Integer.getInteger("todolist.durability.syncEveryRecords", DEFAULT_SYNC_EVERY_RECORDS));
+    }
+
+    public static DurabilityPolicy of(Durability durability) {
+        return new DurabilityPolicy(durability, DEFAULT_SYNC_INTERVAL_MILLIS, DEFAULT_SYNC_EVERY_RECORDS);
+    }
+}
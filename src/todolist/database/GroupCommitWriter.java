@@ -0,0 +1,194 @@
+package todolist.database;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Appends to a file from a single flusher thread. Everything queued while the flusher
+// is busy with the previous write+fsync goes out as one gathering write and one fsync.
+public class GroupCommitWriter implements Closeable {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final Path path;
+    private final DurabilityPolicy policy;
+    private final Thread flusher;
+    private volatile boolean running = true;
+
+    // guarded by this
+    private List<PendingWrite> pending = new ArrayList<>();
+    // completes when every acknowledgement so far has, fails for good once any of them failed
+    private CompletableFuture<Void> lastAcknowledgement = DONE;
+
+    // guarded by ioLock, taking and writing a batch happen under it so batches never reorder
+    private final Object ioLock = new Object();
+    private FileChannel channel;
+    // written under ioLock, also read by the flusher while it waits
+    private final AtomicLong unsyncedRecords = new AtomicLong();
+    private long lastSyncNanos = System.nanoTime();
+
+    public GroupCommitWriter(Path path, DurabilityPolicy policy) {
+        this.path = path;
+        this.policy = policy;
+        this.flusher = new Thread(this::flushLoop, "group-commit-" + path.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    // the returned future completes when the write meets the configured durability
+    public synchronized CompletableFuture<Void> append(ByteBuffer bytes) {
+        CompletableFuture<Void> acknowledgement = new CompletableFuture<>();
+        pending.add(new PendingWrite(bytes, acknowledgement));
+        notifyAll();
+
+        if (policy.durability() == Durability.ASYNC) {
+            return DONE;
+        }
+
+        lastAcknowledgement = lastAcknowledgement.thenCombine(acknowledgement, (earlier, written) -> null);
+        return acknowledgement;
+    }
+
+    // completes once everything appended so far meets the configured durability,
+    // fails if any of it failed: a later batch that made it to disk does not make an earlier one durable
+    public synchronized CompletableFuture<Void> barrier() {
+        return lastAcknowledgement;
+    }
+
+    // writes and fsyncs everything queued, then moves the file away,
+    // the next write creates a new file at the original path
+    public void moveTo(Path target) {
+        synchronized (ioLock) {
+            try {
+                writeBatch(takePending(), true);
+                closeChannel();
+                Files.move(path, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to move " + path, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        synchronized (this) {
+            notifyAll();
+        }
+
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        synchronized (ioLock) {
+            try {
+                writeBatch(takePending(), true);
+                closeChannel();
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to close " + path, e);
+            }
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                awaitPending();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            synchronized (ioLock) {
+                try {
+                    writeBatch(takePending(), false);
+                } catch (IOException e) {
+                    // the failed batch has been completed exceptionally, keep serving the next ones
+                    System.out.println("Failed to write to " + path + ": " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private synchronized void awaitPending() throws InterruptedException {
+        if (!pending.isEmpty() || !running) {
+            return;
+        }
+
+        // without a timed fsync there is nothing to do until the next append
+        if (policy.durability() == Durability.SYNC || unsyncedRecords.get() == 0) {
+            wait();
+        }
+        else {
+            wait(Math.max(1, policy.syncIntervalMillis()));
+        }
+    }
+
+    private synchronized List<PendingWrite> takePending() {
+        List<PendingWrite> batch = pending;
+        pending = new ArrayList<>();
+        return batch;
+    }
+
+    private void writeBatch(List<PendingWrite> batch, boolean forceSync) throws IOException {
+        try {
+            if (!batch.isEmpty()) {
+                ByteBuffer[] buffers = batch.stream().map(PendingWrite::bytes).toArray(ByteBuffer[]::new);
+                FileChannel out = channel();
+                while (buffers[buffers.length - 1].hasRemaining()) {
+                    out.write(buffers);
+                }
+                unsyncedRecords.addAndGet(batch.size());
+            }
+
+            if (unsyncedRecords.get() != 0 && (forceSync || isSyncDue())) {
+                channel().force(false);
+                unsyncedRecords.set(0);
+                lastSyncNanos = System.nanoTime();
+            }
+        } catch (IOException e) {
+            batch.forEach(write -> write.acknowledgement().completeExceptionally(e));
+            throw e;
+        }
+
+        batch.forEach(write -> write.acknowledgement().complete(null));
+    }
+
+    private boolean isSyncDue() {
+        return switch (policy.durability()) {
+            case SYNC -> true;
+            case BATCHED, ASYNC -> unsyncedRecords.get() >= policy.syncEveryRecords() ||
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastSyncNanos) >= policy.syncIntervalMillis();
+        };
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private record PendingWrite(ByteBuffer bytes, CompletableFuture<Void> acknowledgement) {
+    }
+}
@@ -0,0 +1,9 @@
+package todolist.database;
+
+// Locks held by a mutation, released by closing the guard.
+// A null guard is allowed in try-with-resources and stands for "nothing to release".
+public interface Guard extends AutoCloseable {
+
+    @Override
+    void close();
+}
@@ -12,16 +12,12 @@ public class Inbox {
         return tasks;
     }
 
-    public static Inbox getInstance() {
-        return instance;
-    }
-
     public void addTask(Task task) {
         tasks.add(task);
     }
 
-    private static Inbox instance = new Inbox();
-    private Inbox() {
+    // every user owns an inbox of their own
+    public Inbox() {
         tasks = new HashSet<>();
     }
 
@@ -0,0 +1,21 @@
+package todolist.database;
+
+import com.google.gson.JsonElement;
+
+// one mutation in the write-ahead log
+// every record carries the full new state of the object it touches, a user, a collaboration or a single task,
+// so replaying a record twice leaves the dataset unchanged
+public record LogRecord(Operation operation, JsonElement payload) {
+
+    public enum Operation {
+        REGISTER_USER,
+        UPDATE_USER,
+        PUT_TASK,
+        DELETE_TASK,
+        // several task changes that must be replayed all or not at all
+        UPDATE_TASKS,
+        ADD_COLLABORATION,
+        UPDATE_COLLABORATION,
+        DELETE_COLLABORATION
+    }
+}
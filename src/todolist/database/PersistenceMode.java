@@ -0,0 +1,15 @@
+package todolist.database;
+
+public enum PersistenceMode {
+    // every mutation rewrites the whole dataset file
+    SNAPSHOT,
+    // every mutation appends one record to a log next to the dataset file,
+    // startup loads the snapshot and replays the log on top of it
+    WAL;
+
+    private static final String PROPERTY = "todolist.persistence";
+
+    public static PersistenceMode fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, WAL.name()).toUpperCase());
+    }
+}
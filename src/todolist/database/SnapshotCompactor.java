@@ -0,0 +1,165 @@
+package todolist.database;
+
+import com.google.gson.Gson;
+import todolist.collaboration.Collaboration;
+import todolist.user.User;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Folds sealed log segments into a new snapshot on a background thread.
+// The live users and collaborations are never touched: the old snapshot is read from disk,
+// the sealed segments are replayed on top of it and the result replaces the snapshot atomically.
+// Writers only wait for the rotation of the active log segment.
+public class SnapshotCompactor implements Closeable {
+
+    private static final long CHECK_PERIOD_MILLIS = 1000;
+    private static final String TEMPORARY_EXTENSION = ".compacting";
+    private static final long CLOSE_TIMEOUT_SECONDS = 30;
+
+    private final Gson gson = new Gson();
+    private final File snapshot;
+    private final WriteAheadLog log;
+    private final CompactionPolicy policy;
+    private final SnapshotFormat format;
+    private final CompactionMetrics metrics = new CompactionMetrics();
+    private ScheduledExecutorService scheduler;
+    private long lastCompactionNanos = System.nanoTime();
+
+    public SnapshotCompactor(File snapshot, WriteAheadLog log, CompactionPolicy policy, SnapshotFormat format) {
+        this.snapshot = snapshot;
+        this.log = log;
+        this.policy = policy;
+        this.format = format;
+    }
+
+    public CompactionMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void start() {
+        if (!policy.isEnabled()) {
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::compactIfDue, CHECK_PERIOD_MILLIS, CHECK_PERIOD_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    // a compaction that is running finishes first, so no half-written snapshot is left behind
+    @Override
+    public void close() {
+        if (scheduler == null) {
+            return;
+        }
+
+        scheduler.shutdown();
+        try {
+            if (!scheduler.awaitTermination(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                scheduler.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            scheduler.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public synchronized void compact() {
+        long start = System.nanoTime();
+        lastCompactionNanos = start;
+
+        log.rotate();
+        List<File> segments = log.sealedSegments();
+        if (segments.isEmpty()) {
+            return;
+        }
+
+        long bytesBefore = snapshot.length() + segments.stream().mapToLong(File::length).sum();
+
+        Map<String, User> users = new LinkedHashMap<>();
+        Map<String, Collaboration> collaborations = new LinkedHashMap<>();
+        if (snapshot.exists()) {
+            SnapshotFormat.detect(snapshot).read(snapshot,
+                    user -> users.put(user.getUsername(), user),
+                    collaboration -> collaborations.put(collaboration.getName(), collaboration), false);
+        }
+        for (File segment : segments) {
+            WriteAheadLog.replaySegment(segment, record -> apply(record, users, collaborations));
+        }
+        writeSnapshot(users, collaborations);
+
+        for (File segment : segments) {
+            segment.delete();
+        }
+
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        metrics.record(durationMillis, bytesBefore - snapshot.length());
+        System.out.println("Snapshot compaction finished: " + metrics);
+    }
+
+    private void compactIfDue() {
+        long secondsSinceLast = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - lastCompactionNanos);
+        try {
+            if (policy.isDue(log.getBytes(), log.getRecords(), secondsSinceLast)) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            // the sealed segments stay on disk and are picked up by the next run
+            System.out.println("Snapshot compaction failed: " + e.getMessage());
+        }
+    }
+
+    private void apply(LogRecord record, Map<String, User> users, Map<String, Collaboration> collaborations) {
+        switch (record.operation()) {
+            case REGISTER_USER, UPDATE_USER -> {
+                User user = gson.fromJson(record.payload(), User.class);
+                users.put(user.getUsername(), user);
+            }
+            case PUT_TASK, DELETE_TASK -> applyTaskChange(gson.fromJson(record.payload(), TaskChange.class), users);
+            case UPDATE_TASKS -> {
+                for (TaskChange change : gson.fromJson(record.payload(), TaskChange[].class)) {
+                    applyTaskChange(change, users);
+                }
+            }
+            case ADD_COLLABORATION, UPDATE_COLLABORATION -> {
+                Collaboration collaboration = gson.fromJson(record.payload(), Collaboration.class);
+                collaborations.put(collaboration.getName(), collaboration);
+            }
+            case DELETE_COLLABORATION -> collaborations.remove(record.payload().getAsString());
+        }
+    }
+
+    private void applyTaskChange(TaskChange change, Map<String, User> users) {
+        User user = users.get(change.username());
+        if (user != null) {
+            change.applyTo(user);
+        }
+    }
+
+    private void writeSnapshot(Map<String, User> users, Map<String, Collaboration> collaborations) {
+        File temporary = new File(snapshot.getPath() + TEMPORARY_EXTENSION);
+        format.write(temporary, users.values(), collaborations.values());
+
+        try {
+            Files.move(temporary.toPath(), snapshot.toPath(),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to replace snapshot " + snapshot, e);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package todolist.database;
+
+import todolist.collaboration.Collaboration;
+import todolist.user.User;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+// converts a snapshot between the JSON and the binary format
+// usage: SnapshotConverter <source> <target> [json|binary]
+// the target format defaults to the one the source is not in
+public class SnapshotConverter {
+
+    public static void main(String[] args) {
+        final int minArguments = 2;
+        final int source = 0;
+        final int target = 1;
+        final int format = 2;
+
+        if (args.length < minArguments) {
+            System.out.println("Usage: SnapshotConverter <source> <target> [json|binary]");
+            return;
+        }
+
+        File sourceFile = new File(args[source]);
+        File targetFile = new File(args[target]);
+        SnapshotFormat sourceFormat = SnapshotFormat.detect(sourceFile);
+        SnapshotFormat targetFormat = args.length > format
+                ? SnapshotFormat.valueOf(args[format].toUpperCase())
+                : sourceFormat == SnapshotFormat.JSON ? SnapshotFormat.BINARY : SnapshotFormat.JSON;
+
+        List<User> users = new ArrayList<>();
+        List<Collaboration> collaborations = new ArrayList<>();
+        sourceFormat.read(sourceFile, users::add, collaborations::add, true);
+
+        long start = System.nanoTime();
+        targetFormat.write(targetFile, users, collaborations);
+
+        System.out.printf("Wrote %d users and %d collaborations to %s (%s, %d bytes) in %d ms%n",
+                users.size(), collaborations.size(), targetFile, targetFormat, targetFile.length(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,98 @@
+package todolist.database;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonWriter;
+import todolist.collaboration.Collaboration;
+import todolist.user.User;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+
+// the format a snapshot is read with is detected from the file itself,
+// the configured format only decides how new snapshots are written
+public enum SnapshotFormat {
+    // users array on the first line, collaborations array on the second
+    JSON {
+        @Override
+        public void read(File file, Consumer<User> users, Consumer<Collaboration> collaborations,
+                         boolean reportProgress) {
+            new DatasetLoader(file, reportProgress).load(User.class, users, Collaboration.class, collaborations);
+        }
+
+        @Override
+        public void write(File file, Collection<User> users, Collection<Collaboration> collaborations) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Writer writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8));
+                writeArray(writer, users, User.class);
+                writer.write(System.lineSeparator());
+                writeArray(writer, collaborations, Collaboration.class);
+                writer.flush();
+                channel.force(true);
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to write " + file, e);
+            }
+        }
+
+        private <T> void writeArray(Writer writer, Collection<T> elements, Class<T> type) throws IOException {
+            JsonWriter jsonWriter = GSON.newJsonWriter(writer);
+            jsonWriter.beginArray();
+            for (T element : elements) {
+                GSON.toJson(element, type, jsonWriter);
+            }
+            jsonWriter.endArray();
+            jsonWriter.flush();
+        }
+    },
+    // see BinarySnapshot
+    BINARY {
+        @Override
+        public void read(File file, Consumer<User> users, Consumer<Collaboration> collaborations,
+                         boolean reportProgress) {
+            long start = System.nanoTime();
+            int[] records = new int[1];
+            BinarySnapshot.read(file, user -> {
+                records[0]++;
+                users.accept(user);
+            }, collaboration -> {
+                records[0]++;
+                collaborations.accept(collaboration);
+            });
+
+            if (reportProgress) {
+                System.out.printf("Loaded %d records from %s in %d ms%n",
+                        records[0], file, (System.nanoTime() - start) / 1_000_000);
+            }
+        }
+
+        @Override
+        public void write(File file, Collection<User> users, Collection<Collaboration> collaborations) {
+            BinarySnapshot.write(file, users, collaborations);
+        }
+    };
+
+    private static final Gson GSON = new Gson();
+    private static final String PROPERTY = "todolist.snapshot.format";
+
+    public abstract void read(File file, Consumer<User> users, Consumer<Collaboration> collaborations,
+                              boolean reportProgress);
+
+    public abstract void write(File file, Collection<User> users, Collection<Collaboration> collaborations);
+
+    public static SnapshotFormat fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, JSON.name()).toUpperCase());
+    }
+
+    public static SnapshotFormat detect(File file) {
+        return BinarySnapshot.isBinarySnapshot(file) ? BINARY : JSON;
+    }
+}
@@ -6,15 +6,17 @@ import todolist.exceptions.CollaborationNotExistException;
 import todolist.exceptions.UserAlreadyExistsException;
 import todolist.exceptions.UserAlreadyLoggedException;
 import todolist.exceptions.UserDoesNotExistException;
+import todolist.response.Response;
 import todolist.user.User;
 
 import java.nio.channels.SocketChannel;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface Storage {
 
     List<User> getUsers();
-    void identifyChannel(SocketChannel clientChannel);
 
     boolean isItAccessible(SocketChannel clientSocket);
 
@@ -25,24 +27,50 @@ public interface Storage {
 
     boolean logout(SocketChannel clientSocket, User user);
 
+    // forgets a channel that closed or went idle, its user may log in again
+    void disconnect(SocketChannel clientSocket);
+
     void updateUsersDatabase(User updatedUser);
 
+    // persists only the named task of the user, which was added, changed or deleted
+    void updateUserTask(User user, String taskName);
+
+    // persists the named tasks of the user in one record, a crash keeps either all of the changes or none
+    void updateUserTasks(User user, Collection<String> taskNames);
+
     void updateCollaborationsDatabase(Collaboration updatedCollaboration);
 
     boolean addCollaboration(Collaboration collaboration);
 
     String listCollaboration(User user);
 
+    // bumped whenever a collaboration is added, changed or deleted
+    long collaborationsVersion();
+
     boolean deleteCollaboration(String collaborationName, User currentUser)
             throws CollaborationNotExistException, CollaborationNotCreatorException;
 
     Collaboration getCollaboration(String name);
 
-    String listTaskCollaboration(String collaborationName) throws CollaborationNotExistException;
+    Response listTaskCollaboration(String collaborationName) throws CollaborationNotExistException;
 
     String listUsersCollaboration(String collaborationName) throws CollaborationNotExistException;
 
     User getCurrentUser(String username);
 
+    boolean isPasswordTaken(String password);
+
+    // a change to a user or a collaboration holds its guard from the first change until it is persisted,
+    // a collaboration is locked before any user
+    Guard lockUser(User user);
+
+    Guard lockCollaboration(String collaborationName);
+
+    // completes once every change made so far is as durable as the storage promises,
+    // responses to clients are held back until then
+    default CompletableFuture<Void> durabilityBarrier() {
+        return CompletableFuture.completedFuture(null);
+    }
+
 
 }
@@ -0,0 +1,41 @@
+package todolist.database;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+// A fixed number of reentrant locks shared by hashing the key, keys on the same stripe share a lock.
+// Several stripes are always taken in ascending order, so holders of different sets can not deadlock.
+final class StripedLocks {
+    private final ReentrantLock[] stripes;
+
+    StripedLocks(int count) {
+        stripes = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    Guard lock(String key) {
+        ReentrantLock lock = stripes[stripeOf(key)];
+        lock.lock();
+        return lock::unlock;
+    }
+
+    Guard lockAll(String... keys) {
+        int[] held = Arrays.stream(keys).mapToInt(this::stripeOf).distinct().sorted().toArray();
+        for (int stripe : held) {
+            stripes[stripe].lock();
+        }
+
+        return () -> {
+            for (int i = held.length - 1; i >= 0; i--) {
+                stripes[held[i]].unlock();
+            }
+        };
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        return ((hash ^ (hash >>> 16)) & Integer.MAX_VALUE) % stripes.length;
+    }
+}
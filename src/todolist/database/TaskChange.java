@@ -0,0 +1,25 @@
+package todolist.database;
+
+import todolist.exceptions.TaskAlreadyExistsException;
+import todolist.exceptions.TaskDoesNotExistException;
+import todolist.order.Task;
+import todolist.user.User;
+import todolist.validation.Validation;
+
+// payload of the task records: the new state of one task of a user, no task once it was deleted,
+// a change to a single task is logged without the rest of the user's tasks
+record TaskChange(String username, String taskName, Task task) {
+
+    void applyTo(User user) {
+        try {
+            if (!Validation.isObjNull(user.getTask(taskName))) {
+                user.deleteTask(taskName);
+            }
+            if (!Validation.isObjNull(task)) {
+                user.addTask(task);
+            }
+        } catch (TaskAlreadyExistsException | TaskDoesNotExistException e) {
+            throw new IllegalStateException("failed to apply the change of task " + taskName, e);
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package todolist.database;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+// the active log is <dataset>.wal, rotation seals it as <dataset>.wal.<sequence>
+// replay goes through the sealed segments in sequence order and then the active log
+public class WriteAheadLog implements Closeable {
+
+    private static final String LOG_EXTENSION = ".wal";
+    private static final Gson GSON = new Gson();
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final byte NEW_LINE = '\n';
+
+    private final File file;
+    private final DurabilityPolicy durabilityPolicy;
+    private GroupCommitWriter writer;
+    private long bytes;
+    private long records;
+
+    public WriteAheadLog(File file) {
+        this(file, DurabilityPolicy.fromSystemProperties());
+    }
+
+    public WriteAheadLog(File file, DurabilityPolicy durabilityPolicy) {
+        this.file = file;
+        this.durabilityPolicy = durabilityPolicy;
+        this.bytes = file.length();
+    }
+
+    public static File logFileFor(File datasetFile) {
+        return new File(datasetFile.getPath() + LOG_EXTENSION);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    // size of the active segment
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    // records in the active segment
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    // the returned future completes when the record meets the durability policy
+    public synchronized CompletableFuture<Void> append(LogRecord record) {
+        ByteBuffer line = ByteBuffer.wrap((GSON.toJson(record) + System.lineSeparator())
+                .getBytes(StandardCharsets.UTF_8));
+
+        bytes += line.remaining();
+        records++;
+        return writer().append(line);
+    }
+
+    // completes once every record appended so far meets the durability policy
+    public synchronized CompletableFuture<Void> barrier() {
+        return writer == null ? CompletableFuture.completedFuture(null) : writer.barrier();
+    }
+
+    // seals the active segment and starts a new empty one, returns null if there was nothing to seal
+    public synchronized File rotate() {
+        if (records == 0 && file.length() == 0) {
+            return null;
+        }
+
+        File sealed = segmentFile(lastSequence() + 1);
+        writer().moveTo(sealed.toPath());
+
+        bytes = 0;
+        records = 0;
+        return sealed;
+    }
+
+    public List<File> sealedSegments() {
+        File directory = file.getAbsoluteFile().getParentFile();
+        String prefix = file.getName() + ".";
+        File[] candidates = directory.listFiles((dir, name) -> name.startsWith(prefix)
+                && name.substring(prefix.length()).chars().allMatch(Character::isDigit)
+                && name.length() > prefix.length());
+
+        List<File> segments = new ArrayList<>();
+        if (candidates != null) {
+            segments.addAll(List.of(candidates));
+        }
+        segments.sort(Comparator.comparingLong(this::sequenceOf));
+
+        return segments;
+    }
+
+    public synchronized int replay(Consumer<LogRecord> consumer) {
+        int replayed = 0;
+        for (File segment : sealedSegments()) {
+            replayed += replaySegment(segment, consumer);
+        }
+
+        SegmentReplay active = replayRecords(file, consumer);
+        // new records are appended after the last complete one, not glued onto a torn line
+        if (active.completeBytes() < file.length()) {
+            truncate(file, active.completeBytes());
+        }
+
+        records = active.records();
+        bytes = file.length();
+        return replayed + active.records();
+    }
+
+    public static int replaySegment(File segment, Consumer<LogRecord> consumer) {
+        return replayRecords(segment, consumer).records();
+    }
+
+    // a torn last line (crash in the middle of append) has no line terminator and is ignored,
+    // everything before it is applied in order. A complete line that does not parse is corruption,
+    // replay fails instead of dropping the acknowledged records after it
+    static SegmentReplay replayRecords(File segment, Consumer<LogRecord> consumer) {
+        if (!segment.exists()) {
+            return new SegmentReplay(0, 0);
+        }
+
+        int replayed = 0;
+        long completeBytes = 0;
+        long offset = 0;
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try (InputStream in = new FileInputStream(segment)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                int lineStart = 0;
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] != NEW_LINE) {
+                        continue;
+                    }
+
+                    line.write(buffer, lineStart, i - lineStart);
+                    lineStart = i + 1;
+                    String text = line.toString(StandardCharsets.UTF_8);
+                    line.reset();
+                    if (!text.isBlank()) {
+                        LogRecord record;
+                        try {
+                            record = GSON.fromJson(text, LogRecord.class);
+                        } catch (JsonParseException e) {
+                            throw new UncheckedIOException(new IOException(
+                                    "Corrupt record in " + segment + " at byte " + completeBytes, e));
+                        }
+
+                        consumer.accept(record);
+                        replayed++;
+                    }
+                    completeBytes = offset + lineStart;
+                }
+
+                // the rest waits for its terminator, a line that never got one was never acknowledged
+                line.write(buffer, lineStart, read - lineStart);
+                offset += read;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to replay " + segment, e);
+        }
+
+        return new SegmentReplay(replayed, completeBytes);
+    }
+
+    private static void truncate(File segment, long length) {
+        try (FileChannel channel = FileChannel.open(segment.toPath(), StandardOpenOption.WRITE)) {
+            channel.truncate(length);
+            channel.force(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to truncate " + segment, e);
+        }
+        System.out.println("Dropped a torn record at the end of " + segment);
+    }
+
+    public synchronized void delete() {
+        close();
+        for (File segment : sealedSegments()) {
+            segment.delete();
+        }
+        file.delete();
+        bytes = 0;
+        records = 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private GroupCommitWriter writer() {
+        if (writer == null) {
+            writer = new GroupCommitWriter(file.toPath(), durabilityPolicy);
+        }
+        return writer;
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(file.getPath() + "." + sequence);
+    }
+
+    private long lastSequence() {
+        List<File> segments = sealedSegments();
+        return segments.isEmpty() ? 0 : sequenceOf(segments.get(segments.size() - 1));
+    }
+
+    private long sequenceOf(File segment) {
+        return Long.parseLong(segment.getName().substring(file.getName().length() + 1));
+    }
+
+    // records applied from a segment and its length up to the end of the last complete one
+    record SegmentReplay(int records, long completeBytes) {
+    }
+}
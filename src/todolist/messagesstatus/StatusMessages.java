@@ -17,4 +17,9 @@ public enum StatusMessages {
     public  String getMessage( String  message) {
         return String.format("{\"status\": \"%s\" ,\"Message\":\"%s\"}", status, message);
     }
+
+    // whether a message made by getMessage carries this status
+    public boolean isStatusOf(String message) {
+        return message.startsWith(String.format("{\"status\": \"%s\"", status));
+    }
 }
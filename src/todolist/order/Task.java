@@ -1,15 +1,21 @@
 package todolist.order;
 
+import com.google.gson.annotations.JsonAdapter;
 import todolist.validation.Validation;
 
+import java.time.LocalDate;
+
 
 public class Task {
     // required parameters
     private final String name;
     // optional parameters
 
-    private String date;
-    private String dueDate;
+    // parsed once, rendered in the d/M/yyyy form only for output and on disk
+    @JsonAdapter(TaskDateAdapter.class)
+    private LocalDate date;
+    @JsonAdapter(TaskDateAdapter.class)
+    private LocalDate dueDate;
     private String description;
 
     private boolean isCompleted;
@@ -18,13 +24,13 @@ public class Task {
         return name;
     }
 
-    public String getDate() {
+    public LocalDate getDate() {
         return date;
     }
 
 
 
-    public String getDueDate() {
+    public LocalDate getDueDate() {
         return dueDate;
     }
 
@@ -45,24 +51,27 @@ public class Task {
     }
 
     public String toString() {
-
         StringBuilder result = new StringBuilder();
+        appendTo(result);
+        return result.toString();
+    }
+
+    // listings render their tasks straight into their output
+    public void appendTo(StringBuilder result) {
         result.append(System.lineSeparator());
         result.append("Name : ").append(this.name).append(System.lineSeparator());
 
         if (!Validation.isObjNull(this.date)) {
-            result.append("Date : ").append(this.date).append(System.lineSeparator());
+            result.append("Date : ").append(Validation.formatDate(this.date)).append(System.lineSeparator());
         }
 
         if (!Validation.isObjNull(this.dueDate)) {
-            result.append("Due Date : ").append(this.dueDate).append(System.lineSeparator());
+            result.append("Due Date : ").append(Validation.formatDate(this.dueDate)).append(System.lineSeparator());
         }
 
         if (!Validation.isObjNull(this.description)) {
             result.append("Description : ").append(this.description).append(System.lineSeparator());
         }
-
-        return result.toString();
     }
 
 
@@ -80,8 +89,8 @@ public class Task {
         // required parameters
         private String name;
         // optional parameters
-        private String date;
-        private String dueDate;
+        private LocalDate date;
+        private LocalDate dueDate;
         private String description;
 
         private boolean isCompleted;
@@ -90,12 +99,12 @@ public class Task {
             this.name = name;
         }
 
-        public TaskBuilder setDate(String date) {
+        public TaskBuilder setDate(LocalDate date) {
             this.date = date;
             return this;
         }
 
-        public TaskBuilder setDueDate(String dueDate) {
+        public TaskBuilder setDueDate(LocalDate dueDate) {
             this.dueDate = dueDate;
             return this;
         }
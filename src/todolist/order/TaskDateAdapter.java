@@ -0,0 +1,30 @@
+package todolist.order;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import todolist.exceptions.InvalidParametersException;
+import todolist.validation.Validation;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+// Task dates stay in their d/M/yyyy text form on disk, so existing datasets load unchanged.
+public class TaskDateAdapter extends TypeAdapter<LocalDate> {
+
+    @Override
+    public void write(JsonWriter out, LocalDate date) throws IOException {
+        out.value(Validation.formatDate(date));
+    }
+
+    @Override
+    public LocalDate read(JsonReader in) throws IOException {
+        try {
+            return Validation.getDateInDateTime(in.nextString());
+        }
+        catch (InvalidParametersException e) {
+            throw new JsonParseException(e.getMessage(), e);
+        }
+    }
+}
@@ -5,6 +5,7 @@ import todolist.exceptions.InvalidParametersException;
 import todolist.validation.Validation;
 import todolist.messagesstatus.StatusMessages;
 
+import java.time.LocalDate;
 
 import static todolist.validation.Validation.validString;
 
@@ -42,16 +43,16 @@ public class TaskFactory {
     }
     private static Task fillDate(String[] args) throws InvalidParametersException, DatePeriodException {
         fillName(args[NAME_INDEX]);
-        Validation.getDateInDateTime(args[DATE_INDEX]);
+        LocalDate date = Validation.getDateInDateTime(args[DATE_INDEX]);
 
-        if (!Validation.checkIfTimeCurrent(args[DATE_INDEX])) {
+        if (!Validation.checkIfTimeCurrent(date)) {
             throw new DatePeriodException(
                     StatusMessages.ERROR.getMessage(
                             "Can not have a task for the past"));
         }
 
         return Task.builder(args[NAME_INDEX])
-                .setDate(args[DATE_INDEX])
+                .setDate(date)
                 .build();
     }
 
@@ -59,24 +60,24 @@ public class TaskFactory {
 
     private static Task fillDeadline(String[] args) throws DatePeriodException, InvalidParametersException {
 
-        fillDate(args);
+        LocalDate date = fillDate(args).getDate();
+        LocalDate dueDate = Validation.getDateInDateTime(args[DUE_DATE_INDEX]);
 
-        if (Validation.getDateInDateTime(args[DATE_INDEX])
-                        .isAfter(Validation.getDateInDateTime(args[DUE_DATE_INDEX]))) {
+        if (date.isAfter(dueDate)) {
             throw new DatePeriodException(
                     StatusMessages.ERROR.getMessage(
                             "Can not begin a task after its deadline"));
         }
 
         return Task.builder(args[NAME_INDEX])
-                .setDate(args[DATE_INDEX])
-                .setDueDate(args[DUE_DATE_INDEX])
+                .setDate(date)
+                .setDueDate(dueDate)
                 .build();
     }
 
     private static Task fillDescription(String[] args) throws DatePeriodException, InvalidParametersException {
 
-        fillDeadline(args);
+        Task deadline = fillDeadline(args);
 
         StringBuilder description = new StringBuilder();
 
@@ -86,8 +87,8 @@ public class TaskFactory {
         }
 
         return Task.builder(args[NAME_INDEX])
-                .setDate(args[DATE_INDEX])
-                .setDueDate(args[DUE_DATE_INDEX])
+                .setDate(deadline.getDate())
+                .setDueDate(deadline.getDueDate())
                 .setDescription(description.toString())
                 .build();
     }
@@ -0,0 +1,22 @@
+package todolist.response;
+
+// A response of which the first pieces have already been rendered into a String.
+final class Continued implements Response {
+    private String rendered;
+    private final Response rest;
+
+    Continued(String rendered, Response rest) {
+        this.rendered = rendered;
+        this.rest = rest;
+    }
+
+    @Override
+    public boolean renderNext(StringBuilder sink) {
+        if (rendered != null) {
+            sink.append(rendered);
+            rendered = null;
+            return true;
+        }
+        return rest.renderNext(sink);
+    }
+}
@@ -0,0 +1,46 @@
+package todolist.response;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// A response already encoded as UTF-8, the server copies its bytes into the output buffer as they are.
+// The bytes may be shared with other responses, each keeps its own position in them.
+public final class Encoded implements Response {
+    private final byte[] bytes;
+    private final boolean isEvent;
+    private int offset;
+
+    Encoded(byte[] bytes) {
+        this(bytes, false);
+    }
+
+    Encoded(byte[] bytes, boolean isEvent) {
+        this.bytes = bytes;
+        this.isEvent = isEvent;
+    }
+
+    // pushed by the server rather than requested by the client
+    public boolean isEvent() {
+        return isEvent;
+    }
+
+    // copies as much as the target takes, true once every byte has been copied
+    public boolean writeTo(ByteBuffer target) {
+        int length = Math.min(target.remaining(), bytes.length - offset);
+        target.put(bytes, offset, length);
+        offset += length;
+        return offset == bytes.length;
+    }
+
+    // the rest of the response in one piece, not to be mixed with writeTo
+    @Override
+    public boolean renderNext(StringBuilder sink) {
+        if (offset == bytes.length) {
+            return false;
+        }
+
+        sink.append(new String(bytes, offset, bytes.length - offset, StandardCharsets.UTF_8));
+        offset = bytes.length;
+        return true;
+    }
+}
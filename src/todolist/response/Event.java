@@ -0,0 +1,17 @@
+package todolist.response;
+
+import java.nio.charset.StandardCharsets;
+
+// A notification pushed to subscribed clients between the responses to their requests.
+// Its text is encoded once, every subscriber gets a frame of its own over the same bytes.
+public final class Event {
+    private final byte[] bytes;
+
+    public Event(String text) {
+        this.bytes = text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public Encoded frame() {
+        return new Encoded(bytes, true);
+    }
+}
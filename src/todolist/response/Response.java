@@ -0,0 +1,22 @@
+package todolist.response;
+
+// The output of a command, rendered a piece at a time: the server encodes each piece straight into
+// the connection's output buffer, so a long listing never has to be held as one String.
+public interface Response {
+
+    // appends the next piece to the sink, false (appending nothing) once the response is complete
+    boolean renderNext(StringBuilder sink);
+
+    static Response of(String text) {
+        return new Text(text);
+    }
+
+    // the whole response at once, for callers that need it as a String
+    default String render() {
+        StringBuilder result = new StringBuilder();
+        while (renderNext(result)) {
+            // keep appending
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package todolist.response;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Rendered listings kept as UTF-8 bytes, so a repeated poll costs a copy into the output buffer.
+//
+// An entry belongs to an owner (a user or a collaboration) and holds the version the owner had when the
+// listing was rendered. Owners bump their version on every change, an entry whose owner or version no
+// longer match is rendered again. The version has to be read before rendering: a listing rendered while
+// a change is made is kept under the version before it and is never served once the change is done.
+// The least recently used entries are evicted once the entries take more than maxBytes.
+// Only small listings are kept: a large one streams as it did without the cache, it is never rendered whole.
+public class ResponseCache {
+    // a listing longer than this part of the cache, or than MAX_ENTRY_CHARS, is not kept
+    private static final int MAX_ENTRY_PARTS = 16;
+    private static final int MAX_ENTRY_CHARS = 64 * 1024;
+    // a listing of more tasks is not even tried, it would not fit into an entry anyway
+    public static final int MAX_ENTRY_TASKS = 512;
+
+    private final long maxBytes;
+    private final long maxEntryChars;
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private final ResponseCacheMetrics metrics = new ResponseCacheMetrics();
+
+    // 0 turns the cache off
+    public ResponseCache(long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        this.maxEntryChars = Math.min(this.maxBytes / MAX_ENTRY_PARTS, MAX_ENTRY_CHARS);
+    }
+
+    public ResponseCacheMetrics getMetrics() {
+        return metrics;
+    }
+
+    // the listing under key as rendered for this version of its owner, rendered and kept if there is none
+    public <E extends Exception> Response get(String key, Object owner, long version, Renderer<E> renderer)
+            throws E {
+        if (maxBytes == 0) {
+            return renderer.render();
+        }
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.owner() == owner && entry.version() == version) {
+                metrics.recordHit();
+                return new Encoded(entry.bytes());
+            }
+            metrics.recordMiss(entry != null);
+        }
+
+        Response response = renderer.render();
+        String rendered;
+        if (response instanceof Text text) {
+            rendered = text.render();
+            if (rendered == null || rendered.length() > maxEntryChars) {
+                return response;
+            }
+        }
+        else if (response instanceof TaskListing listing && listing.size() <= MAX_ENTRY_TASKS) {
+            // long tasks may still make it too large, then no more than one entry has been rendered
+            StringBuilder pieces = new StringBuilder();
+            while (listing.renderNext(pieces)) {
+                if (pieces.length() > maxEntryChars) {
+                    return new Continued(pieces.toString(), listing);
+                }
+            }
+            rendered = pieces.toString();
+        }
+        else {
+            return response;
+        }
+
+        byte[] encoded = rendered.getBytes(StandardCharsets.UTF_8);
+        put(key, new Entry(owner, version, encoded));
+        return new Encoded(encoded);
+    }
+
+    private synchronized void put(String key, Entry entry) {
+        Entry replaced = entries.get(key);
+        if (replaced != null && replaced.owner() == entry.owner() && replaced.version() > entry.version()) {
+            return; // rendered concurrently for a later change
+        }
+
+        if (replaced != null) {
+            bytes -= replaced.size(key);
+        }
+        entries.put(key, entry);
+        bytes += entry.size(key);
+
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Entry> evicted = eldest.next();
+            eldest.remove();
+            bytes -= evicted.getValue().size(evicted.getKey());
+            metrics.recordEviction();
+        }
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @FunctionalInterface
+    public interface Renderer<E extends Exception> {
+        Response render() throws E;
+    }
+
+    private record Entry(Object owner, long version, byte[] bytes) {
+        long size(String key) {
+            return bytes.length + 2L * key.length();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package todolist.response;
+
+public class ResponseCacheMetrics {
+
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long evictions;
+
+    synchronized void recordHit() {
+        hits++;
+    }
+
+    // stale: an entry was found but its owner changed since it was rendered
+    synchronized void recordMiss(boolean stale) {
+        misses++;
+        if (stale) {
+            invalidations++;
+        }
+    }
+
+    synchronized void recordEviction() {
+        evictions++;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("hits=%d misses=%d invalidations=%d evictions=%d",
+                hits, misses, invalidations, evictions);
+    }
+}
@@ -0,0 +1,62 @@
+package todolist.response;
+
+import todolist.order.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Predicate;
+
+// Sections of tasks rendered one task per piece.
+// The tasks of every section are taken when the section is added, later changes to the collections
+// they came from do not reach a listing that is still being written.
+public class TaskListing implements Response {
+    private static final Task[] NO_TASKS = new Task[0];
+
+    private final List<Section> sections = new ArrayList<>();
+    private int section;
+    private int task = -1; // -1 until the header of the section is rendered
+
+    public TaskListing section(String header, Collection<Task> tasks, String separator) {
+        sections.add(new Section(header, tasks.toArray(NO_TASKS), separator));
+        return this;
+    }
+
+    public TaskListing section(String header, Collection<Task> tasks, Predicate<Task> filter, String separator) {
+        sections.add(new Section(header, tasks.stream().filter(filter).toArray(Task[]::new), separator));
+        return this;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Section current : sections) {
+            size += current.tasks().length;
+        }
+        return size;
+    }
+
+    @Override
+    public boolean renderNext(StringBuilder sink) {
+        while (section < sections.size()) {
+            Section current = sections.get(section);
+            if (task < 0) {
+                sink.append(current.header());
+                task++;
+                return true;
+            }
+
+            if (task < current.tasks().length) {
+                current.tasks()[task++].appendTo(sink);
+                sink.append(current.separator());
+                return true;
+            }
+
+            section++;
+            task = -1;
+        }
+        return false;
+    }
+
+    private record Section(String header, Task[] tasks, String separator) {
+    }
+}
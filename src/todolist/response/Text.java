@@ -0,0 +1,26 @@
+package todolist.response;
+
+// a response that already exists as a String, rendered in one piece
+final class Text implements Response {
+    private final String text;
+    private boolean isRendered;
+
+    Text(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public boolean renderNext(StringBuilder sink) {
+        if (isRendered) {
+            return false;
+        }
+        sink.append(text);
+        isRendered = true;
+        return true;
+    }
+
+    @Override
+    public String render() {
+        return text;
+    }
+}
@@ -0,0 +1,357 @@
+package todolist.server;
+
+import todolist.command.CommandsList;
+import todolist.messagesstatus.StatusMessages;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+
+// A pipelining client over one connection: any number of threads send commands without waiting for
+// the replies, the server answers in request order and every reply completes the future of its command.
+//
+// Sent commands are written by one writer thread, all that queued up meanwhile go out in one write.
+// A reader thread takes the replies and hands pushed events to the event listener.
+// A broken connection fails the commands that were written to it, since it is unknown whether the server
+// ran them, then the client connects again and logs in again with the credentials of its last login.
+// Commands sent in the meantime wait and go out once it is back.
+public class AsyncClient implements AutoCloseable {
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_BATCH_BYTES = 64 * 1024;
+    // sending blocks once this many commands wait to be written
+    private static final int MAX_QUEUED_COMMANDS = 10_000;
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 50;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 2000;
+
+    private final InetSocketAddress address;
+    private final BlockingQueue<Request> queued = new LinkedBlockingQueue<>(MAX_QUEUED_COMMANDS);
+    private final Thread writer;
+    private volatile Consumer<String> eventListener = event -> { };
+
+    private final Object linkLock = new Object();
+    // null while reconnecting, guarded by linkLock
+    private Link link;
+    // username and password of the last successful login, null after logout
+    private volatile String[] credentials;
+    private volatile boolean isClosed;
+
+    public AsyncClient(String host, int port) throws IOException {
+        this.address = new InetSocketAddress(host, port);
+        this.link = new Link(SocketChannel.open(address));
+        this.link.start();
+
+        this.writer = new Thread(this::writeQueued, "todolist-client-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    // called on the reader thread with the text of every event the server pushes
+    public void setEventListener(Consumer<String> eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    public CompletableFuture<String> send(String command) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        if (isClosed) {
+            reply.completeExceptionally(new IOException("The client is closed"));
+            return reply;
+        }
+
+        try {
+            queued.put(new Request((command + "\n").getBytes(StandardCharsets.UTF_8), reply));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            reply.completeExceptionally(e);
+        }
+
+        if (isClosed) {
+            failQueued(); // closed while this command was being queued
+        }
+        return reply;
+    }
+
+    // the credentials of a successful login are used to log in again after a reconnect
+    public CompletableFuture<String> login(String username, String password) {
+        return send(loginCommand(username, password)).thenApply(reply -> {
+            if (StatusMessages.SUCCESS.isStatusOf(reply)) {
+                credentials = new String[]{username, password};
+            }
+            return reply;
+        });
+    }
+
+    public CompletableFuture<String> logout() {
+        return send(CommandsList.LOGOUT).thenApply(reply -> {
+            if (StatusMessages.SUCCESS.isStatusOf(reply)) {
+                credentials = null;
+            }
+            return reply;
+        });
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        writer.interrupt();
+
+        Link closed;
+        synchronized (linkLock) {
+            closed = link;
+            link = null;
+            linkLock.notifyAll();
+        }
+        if (closed != null) {
+            closed.fail(new IOException("The client is closed"));
+        }
+        failQueued();
+    }
+
+    private void failQueued() {
+        Request request;
+        while ((request = queued.poll()) != null) {
+            request.reply().completeExceptionally(new IOException("The client is closed"));
+        }
+    }
+
+    private static String loginCommand(String username, String password) {
+        return CommandsList.LOGIN + " " + username + " " + password;
+    }
+
+    private void writeQueued() {
+        ByteBuffer batch = ByteBuffer.allocate(MAX_BATCH_BYTES);
+        List<Request> requests = new ArrayList<>();
+        while (!isClosed) {
+            try {
+                requests.add(queued.take());
+                Link current = awaitLink();
+                batch = fill(batch, requests);
+
+                // the replies are matched in the order the commands reach the server
+                for (Request request : requests) {
+                    current.pending.add(request.reply());
+                }
+                try {
+                    while (batch.hasRemaining()) {
+                        current.channel.write(batch);
+                    }
+                } catch (IOException e) {
+                    current.fail(e);
+                }
+                requests.clear();
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+
+        for (Request request : requests) {
+            request.reply().completeExceptionally(new IOException("The client is closed"));
+        }
+    }
+
+    // the first request and as many of the queued ones as fit
+    private ByteBuffer fill(ByteBuffer batch, List<Request> requests) {
+        batch.clear();
+        int size = requests.get(0).bytes().length;
+        Request next;
+        while ((next = queued.peek()) != null && size + next.bytes().length <= MAX_BATCH_BYTES) {
+            requests.add(queued.poll());
+            size += next.bytes().length;
+        }
+
+        if (batch.capacity() < size) {
+            batch = ByteBuffer.allocate(size);
+        }
+        for (Request request : requests) {
+            batch.put(request.bytes());
+        }
+        return batch.flip();
+    }
+
+    private Link awaitLink() throws InterruptedException {
+        synchronized (linkLock) {
+            while (link == null || link.isBroken()) {
+                if (isClosed) {
+                    throw new InterruptedException("The client is closed");
+                }
+                linkLock.wait();
+            }
+            return link;
+        }
+    }
+
+    // runs on the reader thread of the broken link
+    private void reconnect(Link broken) {
+        synchronized (linkLock) {
+            if (link != broken) {
+                return;
+            }
+            link = null;
+        }
+
+        long delay = MIN_RECONNECT_DELAY_MILLIS;
+        while (!isClosed) {
+            try {
+                Link reconnected = connect();
+                synchronized (linkLock) {
+                    if (isClosed) {
+                        reconnected.fail(new IOException("The client is closed"));
+                        return;
+                    }
+                    link = reconnected;
+                    reconnected.start();
+                    linkLock.notifyAll();
+                }
+                return;
+            } catch (IOException e) {
+                System.out.println("Reconnecting to the server failed: " + e.getMessage());
+            }
+
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            delay = Math.min(delay * 2, MAX_RECONNECT_DELAY_MILLIS);
+        }
+    }
+
+    // a new connection, logged in again before any queued command goes out
+    private Link connect() throws IOException {
+        Link reconnected = new Link(SocketChannel.open(address));
+        String[] loggedIn = credentials;
+        if (loggedIn == null) {
+            return reconnected;
+        }
+
+        try {
+            reconnected.channel.write(ByteBuffer.wrap(
+                    (loginCommand(loggedIn[0], loggedIn[1]) + "\n").getBytes(StandardCharsets.UTF_8)));
+            String reply = reconnected.readMessage().text();
+            if (!StatusMessages.SUCCESS.isStatusOf(reply)) {
+                // the server may not have noticed yet that the old connection is gone
+                throw new IOException("Logging in again failed: " + reply);
+            }
+        } catch (IOException e) {
+            reconnected.channel.close();
+            throw e;
+        }
+        return reconnected;
+    }
+
+    // One connection of the client with the replies it still owes.
+    private final class Link {
+        private final SocketChannel channel;
+        private final Queue<CompletableFuture<String>> pending = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
+        private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+        private volatile boolean isBroken;
+
+        Link(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        boolean isBroken() {
+            return isBroken;
+        }
+
+        void start() {
+            Thread reader = new Thread(this::readReplies, "todolist-client-reader");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void readReplies() {
+            try {
+                while (true) {
+                    Message next = readMessage();
+                    if (next.isEvent()) {
+                        eventListener.accept(next.text());
+                        continue;
+                    }
+
+                    CompletableFuture<String> reply = pending.poll();
+                    if (reply != null) {
+                        reply.complete(next.text());
+                    }
+                }
+            } catch (IOException e) {
+                fail(e);
+                reconnect(this);
+            }
+        }
+
+        // every frame but the last of a message has MORE_FRAMES set, the frames of an event EVENT_FRAME
+        Message readMessage() throws IOException {
+            message.reset();
+            int prefix;
+            do {
+                prefix = readInt();
+                copy(prefix & FrameEncoder.LENGTH_MASK);
+            } while ((prefix & FrameEncoder.MORE_FRAMES) != 0);
+
+            return new Message((prefix & FrameEncoder.EVENT_FRAME) != 0, message.toString(StandardCharsets.UTF_8));
+        }
+
+        private int readInt() throws IOException {
+            while (in.remaining() < Integer.BYTES) {
+                fillInput();
+            }
+            return in.getInt();
+        }
+
+        private void copy(int length) throws IOException {
+            while (length > 0) {
+                if (!in.hasRemaining()) {
+                    fillInput();
+                }
+                int chunk = Math.min(length, in.remaining());
+                message.write(in.array(), in.position(), chunk);
+                in.position(in.position() + chunk);
+                length -= chunk;
+            }
+        }
+
+        private void fillInput() throws IOException {
+            in.compact();
+            try {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("The server closed the connection");
+                }
+            } finally {
+                in.flip();
+            }
+        }
+
+        void fail(IOException cause) {
+            isBroken = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // closing a broken connection
+            }
+
+            CompletableFuture<String> reply;
+            while ((reply = pending.poll()) != null) {
+                reply.completeExceptionally(cause);
+            }
+        }
+    }
+
+    private record Request(byte[] bytes, CompletableFuture<String> reply) {
+    }
+
+    private record Message(boolean isEvent, String text) {
+    }
+}
@@ -4,19 +4,18 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
-import java.nio.channels.SocketChannel;
 import java.util.Scanner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
-// NIO, blocking
+// Console client on top of AsyncClient, a command is sent for every line and its reply printed.
+// Logins made here are repeated by the client after it reconnects.
 public class Client {
 
     private static final int SERVER_PORT = 7769;
     private static final String SERVER_HOST = "localhost";
-    private static final int BUFFER_SIZE = 512;
-
-    private static ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private static final String LOGIN_PREFIX = "login ";
+    private static final String LOGOUT = "logout";
 
     private static final String FILE_STACK_TRACES = "stacktrace1.txt";
 
@@ -25,11 +24,10 @@ public class Client {
 
     public static void main(String[] args) throws IOException {
 
-        try (SocketChannel socketChannel = SocketChannel.open();
+        try (AsyncClient client = new AsyncClient(SERVER_HOST, SERVER_PORT);
              Scanner scanner = new Scanner(System.in)) {
 
-            socketChannel.connect(new InetSocketAddress(SERVER_HOST, SERVER_PORT));
-
+            client.setEventListener(event -> System.out.println("The server pushed <" + event + ">"));
             System.out.println("Connected to the server.");
 
             while (true) {
@@ -42,23 +40,13 @@ public class Client {
 
                 System.out.println("Sending message <" + message + "> to the server...");
 
-                buffer.clear(); // switch to writing mode
-                buffer.put(message.getBytes()); // buffer fill
-                buffer.flip(); // switch to reading mode
-                socketChannel.write(buffer); // buffer drain
-
-                buffer.clear(); // switch to writing mode
-                socketChannel.read(buffer); // buffer fill
-                buffer.flip(); // switch to reading mode
-
-                byte[] byteArray = new byte[buffer.remaining()];
-                buffer.get(byteArray);
-                String reply = new String(byteArray, "UTF-8"); // buffer drain
-
-                // if buffer is a non-direct one, is has a wrapped array and we can get it
-                //String reply = new String(buffer.array(), 0, buffer.position(), "UTF-8"); // buffer drain
-
-                System.out.println("The server replied <" + reply + ">");
+                try {
+                    String reply = send(client, message).join();
+                    System.out.println("The server replied <" + reply + ">");
+                }
+                catch (CompletionException e) {
+                    System.out.println("The command failed: " + e.getCause().getMessage());
+                }
             }
 
         }
@@ -82,4 +70,18 @@ public class Client {
             throw new RuntimeException("There is a problem with the network communication", e);
         }
     }
-}
\ No newline at end of file
+
+    private static CompletableFuture<String> send(AsyncClient client, String message) {
+        final int loginArguments = 3;
+        final int username = 1;
+        final int password = 2;
+        String[] tokens = message.split(" ");
+        if (message.startsWith(LOGIN_PREFIX) && tokens.length == loginArguments) {
+            return client.login(tokens[username], tokens[password]);
+        }
+        if (LOGOUT.equals(message)) {
+            return client.logout();
+        }
+        return client.send(message);
+    }
+}
@@ -0,0 +1,141 @@
+package todolist.server;
+
+import todolist.messagesstatus.StatusMessages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Pipelining connections to one server, one for every user the pool works for.
+// The server lets a user be logged in on one connection only, so the commands of all threads working for
+// a user share that user's connection. The least recently used connection is logged out and closed once
+// the pool would hold more than maxConnections.
+// A connection is opened and logged in without holding the pool, so a slow login only holds up the threads
+// working for that user.
+public class ClientPool implements AutoCloseable {
+    private final String host;
+    private final int port;
+    private final int maxConnections;
+    // username -> the connection logged in as the user, completed once the server accepted the login
+    private final Map<String, CompletableFuture<AsyncClient>> connections = new ConcurrentHashMap<>();
+    // username -> when its connection was last asked for
+    private final Map<String, Long> lastUsed = new ConcurrentHashMap<>();
+    // guarded by this, like adding and evicting connections
+    private boolean isClosed;
+
+    public ClientPool(String host, int port, int maxConnections) {
+        if (maxConnections < 1) {
+            throw new IllegalArgumentException("At least one connection is required");
+        }
+
+        this.host = host;
+        this.port = port;
+        this.maxConnections = maxConnections;
+    }
+
+    public CompletableFuture<String> send(String username, String password, String command) {
+        return connectionFor(username, password).thenCompose(connection -> connection.send(command));
+    }
+
+    // the connection logged in as the user, opened and logged in by the first caller asking for the user
+    // while the callers after it wait on the same future
+    public CompletableFuture<AsyncClient> connectionFor(String username, String password) {
+        CompletableFuture<AsyncClient> connection = connections.get(username);
+        if (connection != null) {
+            lastUsed.put(username, System.nanoTime());
+            return connection;
+        }
+
+        CompletableFuture<AsyncClient> evicted = null;
+        synchronized (this) {
+            if (isClosed) {
+                return CompletableFuture.failedFuture(new IOException("The pool is closed"));
+            }
+
+            CompletableFuture<AsyncClient> opened = new CompletableFuture<>();
+            connection = connections.putIfAbsent(username, opened);
+            lastUsed.put(username, System.nanoTime());
+            if (connection != null) {
+                return connection;
+            }
+            connection = opened;
+
+            if (connections.size() > maxConnections) {
+                String eldest = connections.keySet().stream()
+                        .filter(user -> !user.equals(username))
+                        .min(Comparator.comparingLong(user -> lastUsed.getOrDefault(user, Long.MIN_VALUE)))
+                        .orElseThrow();
+                evicted = connections.remove(eldest);
+                lastUsed.remove(eldest);
+            }
+        }
+
+        if (evicted != null) {
+            evicted.thenAccept(ClientPool::retire);
+        }
+        open(username, password, connection);
+        return connection;
+    }
+
+    private void open(String username, String password, CompletableFuture<AsyncClient> connection) {
+        AsyncClient client;
+        try {
+            client = new AsyncClient(host, port);
+        } catch (IOException e) {
+            fail(username, connection, e);
+            return;
+        }
+
+        client.login(username, password).whenComplete((reply, failure) -> {
+            if (failure == null && StatusMessages.SUCCESS.isStatusOf(reply)) {
+                connection.complete(client);
+                return;
+            }
+
+            client.close();
+            if (failure != null) {
+                Throwable cause = failure instanceof CompletionException && failure.getCause() != null
+                        ? failure.getCause() : failure;
+                fail(username, connection, new IOException("Logging in as " + username + " failed", cause));
+            } else {
+                fail(username, connection, new IOException("Logging in as " + username + " failed: " + reply));
+            }
+        });
+    }
+
+    // a failed login is not kept, the next caller for the user tries again
+    private void fail(String username, CompletableFuture<AsyncClient> connection, IOException cause) {
+        synchronized (this) {
+            if (connections.remove(username, connection)) {
+                lastUsed.remove(username);
+            }
+        }
+        connection.completeExceptionally(cause);
+    }
+
+    @Override
+    public void close() {
+        List<CompletableFuture<AsyncClient>> closed;
+        synchronized (this) {
+            isClosed = true;
+            closed = new ArrayList<>(connections.values());
+            connections.clear();
+            lastUsed.clear();
+        }
+
+        // connections still logging in are retired once they are open
+        for (CompletableFuture<AsyncClient> connection : closed) {
+            connection.thenAccept(ClientPool::retire);
+        }
+    }
+
+    // commands already sent on the connection are answered before the logout
+    private static void retire(AsyncClient connection) {
+        connection.logout().whenComplete((reply, failure) -> connection.close());
+    }
+}
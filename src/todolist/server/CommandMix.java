@@ -0,0 +1,92 @@
+package todolist.server;
+
+import todolist.validation.Validation;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static todolist.command.CommandsList.ADD_TASK;
+import static todolist.command.CommandsList.ASSIGN_TASK_COLLABORATION;
+import static todolist.command.CommandsList.FINISH_TASK;
+import static todolist.command.CommandsList.GET_TASK;
+import static todolist.command.CommandsList.LIST_COLLABORATIONS;
+import static todolist.command.CommandsList.LIST_DASHBOARD;
+import static todolist.command.CommandsList.LIST_TASKS;
+import static todolist.command.CommandsList.LIST_TASKS_COLLABORATIONS;
+import static todolist.command.CommandsList.LIST_USERS_COLLABORATIONS;
+import static todolist.command.CommandsList.SYNC;
+
+// Weighted commands the load generator replays, written as "add-task=40,list-dashboard=30,...".
+// Every synthetic user works on its own tasks and on a collaboration of its own.
+final class CommandMix {
+    private static final List<String> SUPPORTED = List.of(ADD_TASK, FINISH_TASK, GET_TASK, LIST_TASKS,
+            LIST_DASHBOARD, SYNC, LIST_COLLABORATIONS, LIST_TASKS_COLLABORATIONS, LIST_USERS_COLLABORATIONS,
+            ASSIGN_TASK_COLLABORATION);
+    // tasks are dated from today on, so that the dashboard has some of them to show
+    private static final int TASK_DATE_DAYS = 31;
+
+    private final List<String> commands = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    private final String[] taskDates = new String[TASK_DATE_DAYS];
+
+    CommandMix(String mix) {
+        List<Integer> weights = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] commandAndWeight = entry.trim().split("=");
+            if (commandAndWeight.length != 2 || !SUPPORTED.contains(commandAndWeight[0])) {
+                throw new IllegalArgumentException("Unsupported command mix entry: " + entry
+                        + ", the commands are " + SUPPORTED);
+            }
+            int weight = Integer.parseInt(commandAndWeight[1]);
+            if (weight > 0) {
+                commands.add(commandAndWeight[0]);
+                weights.add(weight);
+            }
+        }
+        if (commands.isEmpty()) {
+            throw new IllegalArgumentException("The command mix is empty");
+        }
+
+        cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        for (int i = 0; i < weights.size(); i++) {
+            total += weights.get(i);
+            cumulativeWeights[i] = total;
+        }
+
+        LocalDate today = LocalDate.now();
+        for (int day = 0; day < TASK_DATE_DAYS; day++) {
+            taskDates[day] = Validation.formatDate(today.plusDays(day));
+        }
+    }
+
+    List<String> commands() {
+        return commands;
+    }
+
+    // index into commands()
+    int next(Random random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return i;
+            }
+        }
+        return cumulativeWeights.length - 1;
+    }
+
+    // the request line of the command for the connection's user, which added a task during its setup
+    String request(int command, LoadConnection connection, Random random) {
+        String name = commands.get(command);
+        return switch (name) {
+            case ADD_TASK -> ADD_TASK + " t" + connection.nextTask() + " " + taskDates[random.nextInt(TASK_DATE_DAYS)];
+            case FINISH_TASK, GET_TASK -> name + " t" + random.nextInt(connection.tasksAdded());
+            case ASSIGN_TASK_COLLABORATION -> name + " " + connection.collaboration() + " " + connection.username()
+                    + " a" + connection.nextAssignment();
+            case LIST_TASKS_COLLABORATIONS, LIST_USERS_COLLABORATIONS -> name + " " + connection.collaboration();
+            default -> name;
+        };
+    }
+}
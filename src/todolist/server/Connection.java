@@ -0,0 +1,190 @@
+package todolist.server;
+
+import todolist.command.Command;
+import todolist.command.CommandCreator;
+import todolist.command.Session;
+import todolist.response.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+// State of one client connection, attached to its SelectionKey.
+//
+// Requests are UTF-8 lines terminated by '\n', a request may arrive split over several reads.
+// Responses are queued as they complete and rendered into frames only when the channel can take them,
+// see FrameEncoder: output waiting for a slow client is never more than one chunk.
+// Commands of one connection run one after another and their responses keep the request order.
+// Pushed events go out between responses, never inside one.
+class Connection {
+    private static final int BUFFER_SIZE = 1024;
+    static final int MAX_REQUEST_SIZE = 64 * 1024;
+    private static final byte NEW_LINE = '\n';
+    private static final byte CARRIAGE_RETURN = '\r';
+
+    private final SocketChannel channel;
+    private final Session session;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    // the requests before it have been parsed, the buffer is compacted once the complete ones are taken
+    private int requestStart;
+    private final Deque<Response> responses = new ArrayDeque<>();
+    // the part of a piece of the first response that did not fit into the last chunk
+    private CharBuffer leftover;
+    // the part of the last chunk the channel did not take
+    private ByteBuffer unsent;
+
+    private long requestSequence;
+    private long responseSequence;
+    // responses that completed before the ones of earlier requests
+    private final Map<Long, Response> heldResponses = new HashMap<>();
+    private CompletableFuture<Void> lastCommand = CompletableFuture.completedFuture(null);
+    private long lastActivity = System.nanoTime();
+
+    Connection(SocketChannel channel) {
+        this.channel = channel;
+        this.session = new Session(channel);
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    Session session() {
+        return session;
+    }
+
+    // returns -1 once the client closed its side
+    int read() throws IOException {
+        if (!readBuffer.hasRemaining()) {
+            if (readBuffer.capacity() >= MAX_REQUEST_SIZE) {
+                throw new IOException("Request exceeds " + MAX_REQUEST_SIZE + " bytes");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(readBuffer.capacity() * 2, MAX_REQUEST_SIZE));
+            readBuffer.flip();
+            larger.put(readBuffer);
+            readBuffer = larger;
+        }
+
+        lastActivity = System.nanoTime();
+        return channel.read(readBuffer);
+    }
+
+    // the next complete request parsed in the read buffer, null until one has fully arrived
+    Command nextCommand() {
+        byte[] bytes = readBuffer.array();
+        int end = -1;
+        for (int i = requestStart; i < readBuffer.position(); i++) {
+            if (bytes[i] == NEW_LINE) {
+                end = i;
+                break;
+            }
+        }
+
+        if (end < 0) {
+            compact();
+            return null;
+        }
+
+        int length = end > requestStart && bytes[end - 1] == CARRIAGE_RETURN ? end - 1 - requestStart
+                : end - requestStart;
+        Command command = CommandCreator.newCommand(bytes, requestStart, length);
+        requestStart = end + 1;
+        return command;
+    }
+
+    // moves the partial request, if any, to the start of the buffer
+    private void compact() {
+        if (requestStart == 0) {
+            return;
+        }
+
+        readBuffer.flip();
+        readBuffer.position(requestStart);
+        readBuffer.compact();
+        requestStart = 0;
+    }
+
+    long nextSequence() {
+        return requestSequence++;
+    }
+
+    void runInOrder(Runnable command, Executor executor) {
+        lastCommand = lastCommand.thenRunAsync(command, executor);
+    }
+
+    // queues the response of request number sequence once the responses before it are queued
+    void complete(long sequence, Response response) {
+        if (sequence != responseSequence) {
+            heldResponses.put(sequence, response);
+            return;
+        }
+
+        responses.add(response);
+        responseSequence++;
+
+        Response held;
+        while (!heldResponses.isEmpty() && (held = heldResponses.remove(responseSequence)) != null) {
+            responses.add(held);
+            responseSequence++;
+        }
+    }
+
+    void push(Response event) {
+        responses.add(event);
+    }
+
+    // renders and writes as much as the channel accepts, true once nothing is left
+    boolean flush(FrameEncoder encoder) throws IOException {
+        lastActivity = System.nanoTime();
+        while (unsent != null || !responses.isEmpty()) {
+            ByteBuffer chunk = unsent != null ? unsent : encoder.encode(this);
+            channel.write(chunk);
+            if (chunk.hasRemaining()) {
+                // the encoder reuses its chunk for other connections
+                unsent = chunk == unsent ? unsent : ByteBuffer.allocate(chunk.remaining()).put(chunk).flip();
+                return false;
+            }
+            unsent = null;
+        }
+        return true;
+    }
+
+    Response nextResponse() {
+        return responses.peek();
+    }
+
+    void responseWritten() {
+        responses.poll();
+    }
+
+    CharBuffer takeLeftover() {
+        CharBuffer taken = leftover;
+        leftover = null;
+        return taken;
+    }
+
+    void keepLeftover(CharBuffer rest) {
+        leftover = rest;
+    }
+
+    // nothing was read or written for longer than the timeout and no response is outstanding
+    boolean isIdle(long now, long timeoutNanos) {
+        return now - lastActivity > timeoutNanos
+                && responseSequence == requestSequence && responses.isEmpty() && unsent == null;
+    }
+
+    void close() throws IOException {
+        responses.clear();
+        heldResponses.clear();
+        leftover = null;
+        unsent = null;
+        channel.close();
+    }
+}
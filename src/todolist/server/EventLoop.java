@@ -0,0 +1,297 @@
+package todolist.server;
+
+import todolist.command.Command;
+import todolist.command.CommandExecutor;
+import todolist.exceptions.InvalidParametersException;
+import todolist.exceptions.TaskAlreadyExistsException;
+import todolist.messagesstatus.StatusMessages;
+import todolist.response.Event;
+import todolist.response.Response;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// A worker reactor: owns a selector and the connections the acceptor handed to it,
+// reads their requests, has them executed and writes the responses back.
+// Only this loop touches its connections, executing threads hand the responses over through a queue.
+// Responses are rendered here, chunk by chunk, as the client takes them.
+// Events of subscriptions are pushed the same way: all that arrive during one round go out in one write.
+// A closed or idle connection leaves nothing behind, its session is dropped and its user may log in again.
+class EventLoop implements Runnable {
+    private static final long MAX_SWEEP_INTERVAL_MILLIS = 1000;
+    // a client pipelining a burst is read a few times in a row before the loop moves on
+    private static final int MAX_READS_PER_EVENT = 16;
+    // prints every request, for debugging only: a synchronized write to stdout on the loop thread
+    private static final boolean IS_LOGGING_REQUESTS = Boolean.getBoolean("todolist.server.logRequests");
+
+    private final CommandExecutor commandExecutor;
+    private final ExecutionMode executionMode;
+    private final ExecutorService commandExecutorService;
+    private final Selector selector;
+    // 0 keeps idle connections open
+    private final long idleTimeoutNanos;
+    private final long sweepIntervalMillis;
+    private long lastSweep = System.nanoTime();
+
+    private volatile boolean isWorking = true;
+
+    // channels accepted by the acceptor thread, registered by this loop
+    private final Queue<SocketChannel> acceptedChannels = new ConcurrentLinkedQueue<>();
+    // responses whose changes became durable, written back by this loop
+    private final Queue<CompletedResponse> completedResponses = new ConcurrentLinkedQueue<>();
+    // events for subscribed connections, posting many wakes the loop up once
+    private final Queue<PushedEvent> pushedEvents = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean isWakeupPending = new AtomicBoolean();
+    // connections that got responses in this round, each is flushed once for all of them
+    private final Set<SelectionKey> keysToFlush = new LinkedHashSet<>();
+    private final FrameEncoder frameEncoder = new FrameEncoder();
+
+    EventLoop(CommandExecutor commandExecutor, ExecutionMode executionMode,
+              ExecutorService commandExecutorService, long idleTimeoutMillis) throws IOException {
+        this.commandExecutor = commandExecutor;
+        this.executionMode = executionMode;
+        this.commandExecutorService = commandExecutorService;
+        this.selector = Selector.open();
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        this.sweepIntervalMillis = idleTimeoutMillis == 0 ? 0
+                : Math.max(1, Math.min(idleTimeoutMillis, MAX_SWEEP_INTERVAL_MILLIS));
+    }
+
+    void register(SocketChannel clientChannel) {
+        acceptedChannels.add(clientChannel);
+        selector.wakeup();
+    }
+
+    void stop() {
+        isWorking = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        while (isWorking) {
+            try {
+                selector.select(sweepIntervalMillis);
+                registerAcceptedChannels();
+                writeCompletedResponses();
+
+                Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                while (keyIterator.hasNext()) {
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    if (key.isValid()) {
+                        serve(key);
+                    }
+                }
+
+                // responses of commands executed inline during this round
+                writeCompletedResponses();
+                closeIdleConnections();
+            } catch (IOException e) {
+                Server.logError(e);
+            }
+        }
+
+        closeConnections();
+    }
+
+    private void serve(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        try {
+            if (key.isWritable()) {
+                flushClientOutput(key, connection);
+            }
+            if (key.isValid() && key.isReadable()) {
+                readClientInput(key, connection);
+            }
+        } catch (IOException e) {
+            closeConnection(key, e);
+        }
+    }
+
+    private void registerAcceptedChannels() throws IOException {
+        SocketChannel clientChannel;
+        while ((clientChannel = acceptedChannels.poll()) != null) {
+            Connection connection = new Connection(clientChannel);
+            SelectionKey key = clientChannel.register(selector, SelectionKey.OP_READ, connection);
+            connection.session().setEventSink(event -> post(key, event));
+        }
+    }
+
+    // executes every request that fully arrived, a partial one waits in the connection for the rest
+    private void readClientInput(SelectionKey key, Connection connection) throws IOException {
+        for (int reads = 0; reads < MAX_READS_PER_EVENT; reads++) {
+            int read = connection.read();
+            if (read < 0) {
+                closeConnection(key, null);
+                return;
+            }
+            if (read == 0) {
+                return;
+            }
+
+            Command request;
+            while ((request = connection.nextCommand()) != null) {
+                if (IS_LOGGING_REQUESTS) {
+                    System.out.println(request.command());
+                }
+
+                Command command = request;
+                long sequence = connection.nextSequence();
+                if (executionMode == ExecutionMode.INLINE) {
+                    execute(key, sequence, command);
+                } else {
+                    connection.runInOrder(() -> execute(key, sequence, command), commandExecutorService);
+                }
+            }
+        }
+    }
+
+    // the client sees the response only after its changes meet the storage durability,
+    // the loop keeps serving other clients in the meantime
+    private void execute(SelectionKey key, long sequence, Command command) {
+        Connection connection = (Connection) key.attachment();
+        Response output = executeCommand(connection, command);
+        CompletableFuture<Void> barrier = commandExecutor.durabilityBarrier();
+
+        barrier.whenComplete((ignored, failure) -> {
+            completedResponses.add(new CompletedResponse(key, sequence, acknowledgement(barrier, output)));
+            selector.wakeup();
+        });
+    }
+
+    private Response executeCommand(Connection connection, Command command) {
+        try {
+            return commandExecutor.respond(connection.session(), command);
+        } catch (TaskAlreadyExistsException | InvalidParametersException e) {
+            return Response.of(e.getLocalizedMessage());
+        } catch (RuntimeException e) {
+            Server.logError(e);
+            return Response.of(StatusMessages.ERROR.getMessage("The command could not be executed"));
+        }
+    }
+
+    private Response acknowledgement(CompletableFuture<Void> barrier, Response output) {
+        if (barrier.isCompletedExceptionally()) {
+            return Response.of(StatusMessages.ERROR.getMessage("Changes could not be saved. Try again later"));
+        }
+        return output;
+    }
+
+    private void post(SelectionKey key, Event event) {
+        pushedEvents.add(new PushedEvent(key, event));
+        if (isWakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    private void writeCompletedResponses() throws IOException {
+        isWakeupPending.set(false);
+        PushedEvent pushed;
+        while ((pushed = pushedEvents.poll()) != null) {
+            if (pushed.key().isValid()) {
+                ((Connection) pushed.key().attachment()).push(pushed.event().frame());
+                keysToFlush.add(pushed.key());
+            }
+        }
+
+        CompletedResponse response;
+        while ((response = completedResponses.poll()) != null) {
+            if (response.key().isValid()) {
+                ((Connection) response.key().attachment()).complete(response.sequence(), response.response());
+                keysToFlush.add(response.key());
+            }
+        }
+
+        for (SelectionKey key : keysToFlush) {
+            if (!key.isValid()) {
+                continue;
+            }
+
+            try {
+                flushClientOutput(key, (Connection) key.attachment());
+            } catch (IOException e) {
+                closeConnection(key, e);
+            }
+        }
+        keysToFlush.clear();
+    }
+
+    // what the channel does not take now is written once the selector reports it writable
+    private void flushClientOutput(SelectionKey key, Connection connection) throws IOException {
+        if (connection.flush(frameEncoder)) {
+            key.interestOps(SelectionKey.OP_READ);
+        } else {
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+    }
+
+    private void closeIdleConnections() throws IOException {
+        long now = System.nanoTime();
+        if (idleTimeoutNanos == 0 || now - lastSweep < TimeUnit.MILLISECONDS.toNanos(sweepIntervalMillis)) {
+            return;
+        }
+        lastSweep = now;
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.isValid() && ((Connection) key.attachment()).isIdle(now, idleTimeoutNanos)) {
+                System.out.println("Closing idle client connection");
+                closeConnection(key, null);
+            }
+        }
+    }
+
+    private void closeConnection(SelectionKey key, IOException cause) throws IOException {
+        if (cause != null) {
+            System.out.println("Closing client connection: " + cause.getMessage());
+        }
+        key.cancel();
+        Connection connection = (Connection) key.attachment();
+        connection.close();
+        releaseSession(connection);
+    }
+
+    // after the commands the client sent before closing, so a login still running cannot outlive the connection
+    private void releaseSession(Connection connection) {
+        if (executionMode == ExecutionMode.OFFLOADED) {
+            try {
+                connection.runInOrder(() -> commandExecutor.disconnect(connection.session()), commandExecutorService);
+                return;
+            } catch (RejectedExecutionException e) {
+                // the server is stopping, the session is released right away
+            }
+        }
+        commandExecutor.disconnect(connection.session());
+    }
+
+    private void closeConnections() {
+        try {
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                connection.close();
+                commandExecutor.disconnect(connection.session());
+            }
+            selector.close();
+        } catch (IOException e) {
+            Server.logError(e);
+        }
+    }
+
+    private record CompletedResponse(SelectionKey key, long sequence, Response response) {
+    }
+
+    private record PushedEvent(SelectionKey key, Event event) {
+    }
+}
@@ -0,0 +1,32 @@
+package todolist.server;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public enum ExecutionMode {
+    // commands run on the event loop that decoded them
+    INLINE,
+    // commands run on a virtual thread each (a cached thread pool before Java 21),
+    // the event loop only reads requests and writes responses
+    OFFLOADED;
+
+    private static final String PROPERTY = "todolist.server.execution";
+
+    public static ExecutionMode fromSystemProperty() {
+        return valueOf(System.getProperty(PROPERTY, OFFLOADED.name()).toUpperCase());
+    }
+
+    // the project targets Java 17, virtual threads are picked up when the runtime has them
+    static ExecutorService newCommandExecutorService() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "command");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
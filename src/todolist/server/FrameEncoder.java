@@ -0,0 +1,97 @@
+package todolist.server;
+
+import todolist.response.Encoded;
+import todolist.response.Response;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+// Renders responses into a chunk buffer that one event loop reuses for all of its connections.
+// A frame is a 4 byte length prefix followed by that many UTF-8 bytes. A response that does not fit
+// into what is left of the chunk goes on in the next chunk: all of its frames but the last have MORE_FRAMES set.
+// Frames of an event the server pushed rather than a response to a request have EVENT_FRAME set.
+class FrameEncoder {
+    static final int MORE_FRAMES = 0x80000000;
+    static final int EVENT_FRAME = 0x40000000;
+    static final int LENGTH_MASK = ~(MORE_FRAMES | EVENT_FRAME);
+    private static final int CHUNK_SIZE = 64 * 1024;
+    // a scratch buffer grown past this by a huge piece is dropped afterwards
+    private static final int MAX_RETAINED_PIECE = 256 * 1024;
+
+    private final ByteBuffer chunk = ByteBuffer.allocateDirect(CHUNK_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private StringBuilder piece = new StringBuilder();
+    private CharBuffer pieceChars = CharBuffer.allocate(1024);
+
+    // fills the chunk with frames of the connection's responses and returns it ready to be written
+    ByteBuffer encode(Connection connection) {
+        chunk.clear();
+        while (chunk.remaining() > Integer.BYTES && connection.nextResponse() != null) {
+            int prefix = chunk.position();
+            chunk.position(prefix + Integer.BYTES);
+
+            int flags = connection.nextResponse() instanceof Encoded encoded && encoded.isEvent() ? EVENT_FRAME : 0;
+            boolean isComplete = encodeResponse(connection);
+            int length = chunk.position() - prefix - Integer.BYTES;
+            chunk.putInt(prefix, isComplete ? length | flags : length | flags | MORE_FRAMES);
+            if (!isComplete) {
+                break;
+            }
+        }
+
+        if (piece.capacity() > MAX_RETAINED_PIECE) {
+            piece = new StringBuilder();
+            pieceChars = CharBuffer.allocate(1024);
+        }
+        return chunk.flip();
+    }
+
+    // true once the whole response is in the chunk, false if the chunk filled up first
+    private boolean encodeResponse(Connection connection) {
+        Response response = connection.nextResponse();
+        if (response instanceof Encoded encoded) {
+            if (!encoded.writeTo(chunk)) {
+                return false;
+            }
+            connection.responseWritten();
+            return true;
+        }
+
+        while (true) {
+            CharBuffer pending = connection.takeLeftover();
+            if (pending == null) {
+                piece.setLength(0);
+                if (!response.renderNext(piece)) {
+                    connection.responseWritten();
+                    return true;
+                }
+                pending = chars(piece);
+            }
+
+            encoder.reset();
+            CoderResult result = encoder.encode(pending, chunk, true);
+            if (result.isOverflow()) {
+                // the scratch buffer is reused for the next piece, the connection keeps its own copy of the rest
+                connection.keepLeftover(pending == pieceChars ? CharBuffer.wrap(pending.toString()) : pending);
+                return false;
+            }
+        }
+    }
+
+    private CharBuffer chars(StringBuilder text) {
+        if (pieceChars.capacity() < text.length()) {
+            pieceChars = CharBuffer.allocate(Math.max(text.length(), pieceChars.capacity() * 2));
+        }
+
+        pieceChars.clear();
+        text.getChars(0, text.length(), pieceChars.array(), 0);
+        pieceChars.limit(text.length());
+        return pieceChars;
+    }
+}
@@ -0,0 +1,200 @@
+package todolist.server;
+
+import todolist.command.CommandsList;
+import todolist.messagesstatus.StatusMessages;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+// One connection of the load generator with its synthetic user, driven by the loop that owns it.
+//
+// The user registers, logs in, creates a collaboration of its own and adds a first task, so that finishing and
+// getting a task have one from the start, then keeps the pipeline full.
+// The server answers in request order, so a reply belongs to the oldest command still outstanding.
+// Replies are only skipped through, the first bytes are kept to tell errors apart. Pushed events are ignored.
+final class LoadConnection {
+    static final int SETUP = -1;
+    private static final int READ_BUFFER_SIZE = 16 * 1024;
+    // enough of a reply to see its status
+    private static final int REPLY_START_SIZE = 32;
+    private static final int SETUP_COMMANDS = 4;
+
+    private final SocketChannel channel;
+    private final String username;
+    private final String password;
+    private final String collaboration;
+    private int tasksAdded;
+    private int assignments;
+    private int setupReplies;
+    private boolean isFailed;
+
+    // the command index and send time of every request without a reply yet
+    private final Deque<long[]> outstanding = new ArrayDeque<>();
+    private ByteBuffer pendingOutput;
+
+    private int header;
+    private int headerBytes;
+    private int frameRemaining;
+    private final byte[] replyStart = new byte[REPLY_START_SIZE];
+    private int replyStartLength;
+
+    LoadConnection(SocketChannel channel, String username) {
+        this.channel = channel;
+        this.username = username;
+        this.password = username + "Pass";
+        this.collaboration = username + "c";
+    }
+
+    SocketChannel channel() {
+        return channel;
+    }
+
+    String username() {
+        return username;
+    }
+
+    String collaboration() {
+        return collaboration;
+    }
+
+    int tasksAdded() {
+        return tasksAdded;
+    }
+
+    int nextTask() {
+        return tasksAdded++;
+    }
+
+    int nextAssignment() {
+        return assignments++;
+    }
+
+    boolean isReady() {
+        return setupReplies == SETUP_COMMANDS;
+    }
+
+    int outstanding() {
+        return outstanding.size();
+    }
+
+    boolean hasPendingOutput() {
+        return pendingOutput != null;
+    }
+
+    void sendSetup(long now) throws IOException {
+        send(SETUP, CommandsList.REGISTER + " " + username + " " + password, now);
+        send(SETUP, CommandsList.LOGIN + " " + username + " " + password, now);
+        send(SETUP, CommandsList.ADD_COLLABORATION + " " + collaboration, now);
+        send(SETUP, CommandsList.ADD_TASK + " t" + nextTask(), now);
+    }
+
+    // returns false while part of the output waits for the channel to become writable
+    boolean send(int command, String request, long now) throws IOException {
+        outstanding.add(new long[]{command, now});
+        ByteBuffer bytes = ByteBuffer.wrap((request + "\n").getBytes(StandardCharsets.UTF_8));
+        if (pendingOutput != null) {
+            pendingOutput = ByteBuffer.allocate(pendingOutput.remaining() + bytes.remaining())
+                    .put(pendingOutput).put(bytes).flip();
+            return false;
+        }
+
+        channel.write(bytes);
+        pendingOutput = bytes.hasRemaining() ? bytes : null;
+        return pendingOutput == null;
+    }
+
+    boolean flush() throws IOException {
+        channel.write(pendingOutput);
+        if (pendingOutput.hasRemaining()) {
+            return false;
+        }
+        pendingOutput = null;
+        return true;
+    }
+
+    // reads what arrived and reports every complete reply to the listener
+    void read(ByteBuffer buffer, ReplyListener listener) throws IOException {
+        buffer.clear();
+        if (channel.read(buffer) < 0) {
+            throw new EOFException("The server closed the connection");
+        }
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            if (headerBytes < Integer.BYTES) {
+                header = header << Byte.SIZE | buffer.get() & 0xff;
+                if (++headerBytes == Integer.BYTES) {
+                    frameRemaining = header & FrameEncoder.LENGTH_MASK;
+                }
+            } else {
+                int length = Math.min(frameRemaining, buffer.remaining());
+                int kept = Math.min(length, replyStart.length - replyStartLength);
+                buffer.get(replyStart, replyStartLength, kept);
+                replyStartLength += kept;
+                buffer.position(buffer.position() + length - kept);
+                frameRemaining -= length;
+            }
+
+            if (headerBytes == Integer.BYTES && frameRemaining == 0) {
+                frameEnded(listener);
+            }
+        }
+    }
+
+    private void frameEnded(ReplyListener listener) {
+        int frame = header;
+        headerBytes = 0;
+        header = 0;
+        if ((frame & FrameEncoder.MORE_FRAMES) != 0) {
+            return;
+        }
+
+        String start = new String(replyStart, 0, replyStartLength, StandardCharsets.UTF_8);
+        boolean isError = StatusMessages.ERROR.isStatusOf(start) || StatusMessages.WARNING.isStatusOf(start);
+        replyStartLength = 0;
+        if ((frame & FrameEncoder.EVENT_FRAME) != 0) {
+            return;
+        }
+
+        long[] sent = outstanding.poll();
+        if (sent == null || isFailed) {
+            return;
+        }
+        if (sent[0] == SETUP) {
+            if (isError) {
+                isFailed = true;
+                listener.setupFailed(this);
+            } else if (++setupReplies == SETUP_COMMANDS) {
+                listener.ready(this);
+            }
+            return;
+        }
+        listener.replied(this, (int) sent[0], sent[1], isError);
+    }
+
+    // false if it was closed before
+    boolean close() {
+        if (!channel.isOpen()) {
+            return false;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // closing a connection that is done with
+        }
+        return true;
+    }
+
+    interface ReplyListener {
+        void replied(LoadConnection connection, int command, long sentNanos, boolean isError);
+
+        void ready(LoadConnection connection);
+
+        void setupFailed(LoadConnection connection);
+    }
+}
@@ -0,0 +1,368 @@
+package todolist.server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Drives a Server running on this machine with thousands of connections and reports throughput
+// and latency percentiles per command, so that releases can be compared on the same box.
+//
+// Every connection registers and logs in a user of its own, then replays the command mix and keeps
+// pipelineDepth commands outstanding. Once all connections are set up the warmup runs,
+// then every reply to a command sent during the measured window is counted.
+// The connections are spread over a few threads, each with its own selector.
+//
+// java -Dtodolist.load.connections=2000 -Dtodolist.load.durationSeconds=60 todolist.server.LoadGenerator
+public class LoadGenerator {
+    private static final String PROPERTY_PREFIX = "todolist.load.";
+    private static final String DEFAULT_MIX =
+            "add-task=40,list-dashboard=30,finish-task=20,list-tasks-collaboration=5,assign-task-collaboration=5";
+    // connects in flight per thread, the server accepts a limited backlog at once
+    private static final int MAX_CONNECTING = 64;
+    private static final long SETUP_TIMEOUT_SECONDS = 120;
+    private static final long DRAIN_TIMEOUT_SECONDS = 10;
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final InetSocketAddress address;
+    private final int connectionCount;
+    private final int pipelineDepth;
+    private final long warmupNanos;
+    private final long durationNanos;
+    private final CommandMix mix;
+    private final long seed;
+    private final Worker[] workers;
+
+    private final AtomicInteger unsettled;
+    private volatile long measureStart = Long.MAX_VALUE;
+    private volatile long measureEnd = Long.MAX_VALUE;
+
+    public LoadGenerator(String host, int port, int connectionCount, int threadCount, int pipelineDepth,
+                         long warmupSeconds, long durationSeconds, String mix, long seed) {
+        this.address = new InetSocketAddress(host, port);
+        if (address.isUnresolved() || !address.getAddress().isLoopbackAddress()) {
+            throw new IllegalArgumentException("The load generator only runs against a server on this machine, not "
+                    + host);
+        }
+        if (connectionCount < 1 || threadCount < 1 || pipelineDepth < 1 || durationSeconds < 1 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("Connections, threads, pipeline depth and duration must be positive");
+        }
+
+        this.connectionCount = connectionCount;
+        this.pipelineDepth = pipelineDepth;
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(durationSeconds);
+        this.mix = new CommandMix(mix);
+        this.seed = seed;
+        this.unsettled = new AtomicInteger(connectionCount);
+        this.workers = new Worker[Math.min(threadCount, connectionCount)];
+    }
+
+    public void run() {
+        // users of earlier runs stay in the database, every run has new ones
+        String runId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers.length; i++) {
+            int connections = connectionCount / workers.length + (i < connectionCount % workers.length ? 1 : 0);
+            try {
+                workers[i] = new Worker("load" + runId + "w" + i + "u", connections, new Random(seed + i));
+            } catch (IOException e) {
+                throw new UncheckedIOException("failed to open a selector", e);
+            }
+            Thread thread = new Thread(workers[i], "load-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+
+        System.out.printf("Connecting %d users to %s over %d threads%n", connectionCount, address, workers.length);
+        long setupStart = System.nanoTime();
+        awaitSetup(setupStart);
+        System.out.printf("%d connections set up in %.1f s, %d failed%n", connectedCount(),
+                (System.nanoTime() - setupStart) / 1e9, connectionCount - connectedCount());
+
+        long start = System.nanoTime() + warmupNanos;
+        measureStart = start;
+        measureEnd = start + durationNanos;
+        System.out.printf("Warming up for %d s, then measuring for %d s%n",
+                TimeUnit.NANOSECONDS.toSeconds(warmupNanos), TimeUnit.NANOSECONDS.toSeconds(durationNanos));
+
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Worker worker : workers) {
+                    worker.stop();
+                }
+                return;
+            }
+        }
+        report();
+    }
+
+    private void awaitSetup(long setupStart) {
+        long deadline = setupStart + TimeUnit.SECONDS.toNanos(SETUP_TIMEOUT_SECONDS);
+        while (unsettled.get() > 0 && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private int connectedCount() {
+        int connected = 0;
+        for (Worker worker : workers) {
+            connected += worker.connected;
+        }
+        return connected;
+    }
+
+    private void report() {
+        double seconds = durationNanos / 1e9;
+        List<String> commands = mix.commands();
+        System.out.printf("%n%d connections, pipeline depth %d, %.0f s measured%n",
+                connectedCount(), pipelineDepth, seconds);
+        System.out.printf("%-26s %10s %10s %8s %9s %9s %9s %9s %9s%n",
+                "command", "count", "per sec", "errors", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        LatencyHistogram total = new LatencyHistogram();
+        long totalErrors = 0;
+        for (int command = 0; command < commands.size(); command++) {
+            LatencyHistogram latencies = new LatencyHistogram();
+            long errors = 0;
+            for (Worker worker : workers) {
+                latencies.add(worker.latencies[command]);
+                errors += worker.errors[command];
+            }
+            total.add(latencies);
+            totalErrors += errors;
+            printRow(commands.get(command), latencies, errors, seconds);
+        }
+        printRow("total", total, totalErrors, seconds);
+    }
+
+    private static void printRow(String name, LatencyHistogram latencies, long errors, double seconds) {
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%-26s %10d %10.1f %8d",
+                name, latencies.count(), latencies.count() / seconds, errors));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(Locale.ROOT, " %9.3f", latencies.percentileMicros(percentile) / 1000.0));
+        }
+        row.append(String.format(Locale.ROOT, " %9.3f", latencies.maxMicros() / 1000.0));
+        System.out.println(row);
+    }
+
+    // One thread with its share of the connections and its own latency histograms.
+    private final class Worker implements Runnable, LoadConnection.ReplyListener {
+        private final String userPrefix;
+        private final int connectionCount;
+        private final Random random;
+        private final Selector selector;
+        private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(16 * 1024);
+        private final LatencyHistogram[] latencies;
+        private final long[] errors;
+
+        private int opened;
+        private int connecting;
+        private volatile int connected;
+        private volatile boolean isWorking = true;
+
+        Worker(String userPrefix, int connectionCount, Random random) throws IOException {
+            this.userPrefix = userPrefix;
+            this.connectionCount = connectionCount;
+            this.random = random;
+            this.selector = Selector.open();
+            this.latencies = new LatencyHistogram[mix.commands().size()];
+            for (int i = 0; i < latencies.length; i++) {
+                latencies[i] = new LatencyHistogram();
+            }
+            this.errors = new long[latencies.length];
+        }
+
+        void stop() {
+            isWorking = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                long drainDeadline = Long.MAX_VALUE;
+                while (isWorking) {
+                    openConnections();
+                    selector.select(100);
+
+                    Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+                    while (keyIterator.hasNext()) {
+                        SelectionKey key = keyIterator.next();
+                        keyIterator.remove();
+                        if (key.isValid()) {
+                            serve(key);
+                        }
+                    }
+
+                    long now = System.nanoTime();
+                    if (now >= measureEnd) {
+                        // the replies of commands sent during the window are still counted
+                        drainDeadline = Math.min(drainDeadline, now + TimeUnit.SECONDS.toNanos(DRAIN_TIMEOUT_SECONDS));
+                        if (isDrained() || now >= drainDeadline) {
+                            isWorking = false;
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Load thread failed: " + e.getMessage());
+            } finally {
+                closeConnections();
+            }
+        }
+
+        private void openConnections() throws IOException {
+            while (opened < connectionCount && connecting < MAX_CONNECTING) {
+                SocketChannel channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                LoadConnection connection = new LoadConnection(channel, userPrefix + opened++);
+                connecting++;
+                if (channel.connect(address)) {
+                    connected(channel.register(selector, SelectionKey.OP_READ, connection), connection);
+                } else {
+                    channel.register(selector, SelectionKey.OP_CONNECT, connection);
+                }
+            }
+        }
+
+        private void connected(SelectionKey key, LoadConnection connection) throws IOException {
+            connecting--;
+            key.interestOps(SelectionKey.OP_READ);
+            connection.sendSetup(System.nanoTime());
+            updateInterest(key, connection);
+        }
+
+        private void serve(SelectionKey key) {
+            LoadConnection connection = (LoadConnection) key.attachment();
+            try {
+                if (key.isConnectable()) {
+                    connection.channel().finishConnect();
+                    connected(key, connection);
+                    return;
+                }
+                if (key.isWritable() && connection.flush()) {
+                    updateInterest(key, connection);
+                }
+                if (key.isValid() && key.isReadable()) {
+                    connection.read(readBuffer, this);
+                    if (key.isValid()) {
+                        updateInterest(key, connection);
+                    }
+                }
+            } catch (IOException e) {
+                System.out.println("Closing load connection: " + e.getMessage());
+                if (!connection.channel().isConnected()) {
+                    connecting--;
+                }
+                closed(key, connection);
+            }
+        }
+
+        private void updateInterest(SelectionKey key, LoadConnection connection) {
+            key.interestOps(connection.hasPendingOutput() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ);
+        }
+
+        @Override
+        public void replied(LoadConnection connection, int command, long sentNanos, boolean isError) {
+            long now = System.nanoTime();
+            if (sentNanos >= measureStart && sentNanos < measureEnd) {
+                latencies[command].record(now - sentNanos);
+                if (isError) {
+                    errors[command]++;
+                }
+            }
+            fill(connection, now);
+        }
+
+        @Override
+        public void ready(LoadConnection connection) {
+            connected++;
+            unsettled.decrementAndGet();
+            fill(connection, System.nanoTime());
+        }
+
+        @Override
+        public void setupFailed(LoadConnection connection) {
+            System.out.println("Setting up " + connection.username() + " failed");
+            closed(connection.channel().keyFor(selector), connection);
+        }
+
+        // keeps pipelineDepth commands outstanding until the measured window ends
+        private void fill(LoadConnection connection, long now) {
+            try {
+                while (now < measureEnd && connection.outstanding() < pipelineDepth) {
+                    int command = mix.next(random);
+                    connection.send(command, mix.request(command, connection, random), now);
+                }
+            } catch (IOException e) {
+                System.out.println("Closing load connection: " + e.getMessage());
+                closed(connection.channel().keyFor(selector), connection);
+            }
+        }
+
+        private boolean isDrained() {
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid() && ((LoadConnection) key.attachment()).outstanding() > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // a connection lost before its setup completed no longer holds up the start
+        private void closed(SelectionKey key, LoadConnection connection) {
+            if (key != null) {
+                key.cancel();
+            }
+            if (connection.close() && !connection.isReady()) {
+                unsettled.decrementAndGet();
+            }
+        }
+
+        private void closeConnections() {
+            for (SelectionKey key : selector.keys()) {
+                ((LoadConnection) key.attachment()).close();
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // the run is over
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        String host = System.getProperty(PROPERTY_PREFIX + "host", "localhost");
+        int port = Integer.getInteger(PROPERTY_PREFIX + "port", 7769);
+        int connections = Integer.getInteger(PROPERTY_PREFIX + "connections", 1000);
+        int threads = Integer.getInteger(PROPERTY_PREFIX + "threads",
+                Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        int pipelineDepth = Integer.getInteger(PROPERTY_PREFIX + "pipelineDepth", 1);
+        long warmupSeconds = Long.getLong(PROPERTY_PREFIX + "warmupSeconds", 5);
+        long durationSeconds = Long.getLong(PROPERTY_PREFIX + "durationSeconds", 30);
+        String mix = System.getProperty(PROPERTY_PREFIX + "mix", DEFAULT_MIX);
+        long seed = Long.getLong(PROPERTY_PREFIX + "seed", 1);
+
+        new LoadGenerator(host, port, connections, threads, pipelineDepth, warmupSeconds, durationSeconds, mix, seed)
+                .run();
+    }
+}
@@ -1,11 +1,8 @@
 package todolist.server;
 
 
-import todolist.command.CommandCreator;
 import todolist.command.CommandExecutor;
 import todolist.database.Database;
-import todolist.exceptions.InvalidParametersException;
-import todolist.exceptions.TaskAlreadyExistsException;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -13,18 +10,24 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.UncheckedIOException;
 import java.net.InetSocketAddress;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 
+// The calling thread accepts connections and hands them round-robin to the worker event loops,
+// each loop serves its connections on its own thread and selector.
+// Depending on the execution mode the loops run the commands themselves or hand them to other threads.
 public class Server {
-    private static final int BUFFER_SIZE = 1024;
     private static final String HOST = "localhost";
+    private static final String EVENT_LOOPS_PROPERTY = "todolist.server.eventLoops";
+    // connections silent for longer are closed and their users logged out, 0 keeps them open
+    private static final String IDLE_TIMEOUT_PROPERTY = "todolist.server.idleTimeoutSeconds";
+    private static final long DEFAULT_IDLE_TIMEOUT_SECONDS = 300;
 
     private final CommandExecutor commandExecutor;
 
@@ -33,82 +36,66 @@ public class Server {
     private static final File FILE = new File(FILE_STACK_TRACES);
 
     private final int port;
-    private boolean isServerWorking;
+    private final int eventLoopCount;
+    private final ExecutionMode executionMode;
+    private final long idleTimeoutMillis =
+            TimeUnit.SECONDS.toMillis(Math.max(0, Long.getLong(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS)));
+    private volatile boolean isServerWorking;
 
-    private ByteBuffer buffer;
     private Selector selector;
+    private EventLoop[] eventLoops;
+    private ExecutorService commandExecutorService;
+    private int nextEventLoop;
 
     public Server(int port, CommandExecutor commandExecutor) {
+        this(port, commandExecutor, Integer.getInteger(EVENT_LOOPS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                ExecutionMode.fromSystemProperty());
+    }
+
+    public Server(int port, CommandExecutor commandExecutor, int eventLoopCount, ExecutionMode executionMode) {
+        if (eventLoopCount < 1) {
+            throw new IllegalArgumentException("At least one event loop is required");
+        }
+
         this.port = port;
         this.commandExecutor = commandExecutor;
+        this.eventLoopCount = eventLoopCount;
+        this.executionMode = executionMode;
     }
 
-    public void start() throws TaskAlreadyExistsException, InvalidParametersException {
+    public void start() {
         try (ServerSocketChannel serverSocketChannel = ServerSocketChannel.open()) {
 
             selector = Selector.open();
             configureServerSocketChannel(serverSocketChannel, selector);
-            this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            startEventLoops();
             isServerWorking = true;
             while (isServerWorking) {
 
                 try {
-
-
-                    int readyChannels = selector.select();
-                    if (readyChannels == 0) {
-                        continue;
-                    }
-
-
+                    selector.select();
 
                     Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
                     while (keyIterator.hasNext()) {
 
                         SelectionKey key = keyIterator.next();
-                        if (key.isReadable()) {
-                            SocketChannel clientChannel = (SocketChannel) key.channel();
-                            String clientInput = getClientInput(clientChannel);
-                            System.out.println(clientInput);
-                            if (clientInput == null) {
-                                continue;
-                            }
-                            
-                            String output = commandExecutor
-                                    .execute(clientChannel, CommandCreator.newCommand(clientInput));
-
-                            writeClientOutput(clientChannel, output);
-
-                        } else if (key.isAcceptable()) {
-                            accept(selector, key);
-                        }
-
                         keyIterator.remove();
-                    }
-                } catch (IOException e) {
-
-                    FILE.createNewFile();
-
-                    try (FileWriter fr = new FileWriter(FILE, true)) {
-                        try (BufferedWriter br = new BufferedWriter(fr)) {
-                            br.write(e.getStackTrace().toString());
-                            br.write(System.lineSeparator());
+                        if (key.isAcceptable()) {
+                            accept(key);
                         }
-                        catch (IOException ex) {
-                            throw new RuntimeException(ex);
-                        }
-                    }
-                    catch (IOException ex) {
-                        throw new RuntimeException(ex);
                     }
-
-                    System.out.println("Error occurred while processing client request: " + e.getMessage());
+                } catch (IOException e) {
+                    logError(e);
                 }
             }
         }
         catch (IOException e) {
             throw new UncheckedIOException("failed to start server", e);
         }
+        finally {
+            stopEventLoops();
+            System.out.println("Response cache: " + commandExecutor.getResponseCacheMetrics());
+        }
     }
 
     public void stop() {
@@ -118,49 +105,75 @@ public class Server {
         }
     }
 
+    static void logError(Exception e) {
+        try {
+            FILE.createNewFile();
+
+            try (FileWriter fr = new FileWriter(FILE, true)) {
+                try (BufferedWriter br = new BufferedWriter(fr)) {
+                    br.write(e.getStackTrace().toString());
+                    br.write(System.lineSeparator());
+                }
+            }
+        }
+        catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+
+        System.out.println("Error occurred while processing client request: " + e.getMessage());
+    }
+
     private void configureServerSocketChannel(ServerSocketChannel channel, Selector selector) throws IOException {
         channel.bind(new InetSocketAddress(HOST, this.port));
         channel.configureBlocking(false);
         channel.register(selector, SelectionKey.OP_ACCEPT);
     }
 
-    private String getClientInput(SocketChannel clientChannel) throws IOException {
-        buffer.clear();
-
-        int readBytes = clientChannel.read(buffer);
-        if (readBytes < 0) {
-            clientChannel.close();
-            return null;
+    private void startEventLoops() throws IOException {
+        if (executionMode == ExecutionMode.OFFLOADED) {
+            commandExecutorService = ExecutionMode.newCommandExecutorService();
         }
 
-        buffer.flip();
+        eventLoops = new EventLoop[eventLoopCount];
+        for (int i = 0; i < eventLoopCount; i++) {
+            eventLoops[i] = new EventLoop(commandExecutor, executionMode, commandExecutorService, idleTimeoutMillis);
+            new Thread(eventLoops[i], "event-loop-" + i).start();
+        }
+    }
 
-        byte[] clientInputBytes = new byte[buffer.remaining()];
-        buffer.get(clientInputBytes);
+    private void stopEventLoops() {
+        if (commandExecutorService != null) {
+            commandExecutorService.shutdown();
+        }
 
-        return new String(clientInputBytes, StandardCharsets.UTF_8);
-    }
+        if (eventLoops == null) {
+            return;
+        }
 
-    private void writeClientOutput(SocketChannel clientChannel, String output) throws IOException {
-        buffer.clear();
-        buffer.put(output.getBytes());
-        buffer.flip();
-        clientChannel.write(buffer);
+        for (EventLoop eventLoop : eventLoops) {
+            if (eventLoop != null) {
+                eventLoop.stop();
+            }
+        }
     }
 
-    private void accept(Selector selector, SelectionKey key) throws IOException {
+    private void accept(SelectionKey key) throws IOException {
         ServerSocketChannel sockChannel = (ServerSocketChannel) key.channel();
         SocketChannel clientSocket = sockChannel.accept();
+        if (clientSocket == null) {
+            return;
+        }
         clientSocket.configureBlocking(false);
 
-        clientSocket.register(selector, SelectionKey.OP_READ);
+        eventLoops[nextEventLoop].register(clientSocket);
+        nextEventLoop = (nextEventLoop + 1) % eventLoops.length;
     }
 
-    public static void main(String[] args) throws TaskAlreadyExistsException, InvalidParametersException {
+    public static void main(String[] args) {
         final int port = 7769;
         Database database = Database.getInstance();
         Server server = new Server(port, new CommandExecutor(database));
         server.start();
 
     }
-}
\ No newline at end of file
+}
@@ -4,19 +4,56 @@ import todolist.exceptions.InvalidParametersException;
 import todolist.exceptions.TaskAlreadyExistsException;
 import todolist.exceptions.TaskDoesNotExistException;
 import todolist.order.Task;
+import todolist.response.Response;
+import todolist.response.TaskListing;
 import todolist.validation.Validation;
 import todolist.messagesstatus.StatusMessages;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class User {
-
-    private Inbox inbox = Inbox.getInstance();
+    private static final String REGULAR_TASKS_HEADER =
+            System.lineSeparator() + "Tasks regular : " + System.lineSeparator();
+    private static final String INBOX_TASKS_HEADER =
+            System.lineSeparator() + "Tasks inbox : " + System.lineSeparator();
+    private static final String TASK_SEPARATOR = " ";
+    private static final String CHANGED_TASKS_HEADER =
+            System.lineSeparator() + "Tasks changed : " + System.lineSeparator();
+    private static final String FINISHED_TASKS_HEADER =
+            System.lineSeparator() + "Tasks finished : " + System.lineSeparator();
+    private static final String DELETED_TASKS_HEADER =
+            System.lineSeparator() + "Tasks deleted : " + System.lineSeparator();
+    // names of deleted tasks kept for sync, a sync from before the oldest forgotten one gets all tasks
+    private static final int MAX_DELETED_TASKS = 1024;
+
+    private Inbox inbox = new Inbox();
     private Set<Task> tasks;
     private String username;
     private String password;
+    // name -> task over both the dated tasks and the inbox,
+    // built on first use since users loaded by Gson start without it
+    private transient Map<String, Task> tasksByName;
+    // date -> dated tasks on that date, built together with tasksByName
+    private transient NavigableMap<LocalDate, Set<Task>> tasksByDate;
+    // a new one for every change of the tasks, changes are made under the user's lock
+    private transient volatile long version;
+    // task name -> version of its last change, only tasks changed since the server started have one
+    private transient Map<String, Long> taskVersions;
+    // version -> name of the task changed then, one entry per task
+    private transient NavigableMap<Long, String> changes;
+    // in the order they were deleted
+    private transient Set<String> deletedTasks;
+    // changes before it are no longer known one by one
+    private transient long syncFloor;
 
 
 
@@ -42,12 +79,22 @@ public class User {
     public Inbox getInbox() {
         return inbox;
     }
+
+    public long getVersion() {
+        return Math.max(version, Versions.START);
+    }
     public void setTasks(Set<Task> tasks) {
         this.tasks = tasks;
+        this.tasksByName = null;
+        this.tasksByDate = null;
+        forgetChanges();
     }
 
     public void setInbox(Inbox inbox) {
         this.inbox = inbox;
+        this.tasksByName = null;
+        this.tasksByDate = null;
+        forgetChanges();
     }
 
 
@@ -65,7 +112,10 @@ public class User {
         }
         else {
             tasks.add(task);
+            indexByDate(task);
         }
+        tasksByName().put(task.getName(), task);
+        recordChange(task.getName(), false);
 
     }
 
@@ -78,31 +128,30 @@ public class User {
     }
 
     public void deleteTask(String name) throws TaskDoesNotExistException {
+        Task taskToDelete = tasksByName().remove(name);
 
-        if (Validation.isObjNull(getTask(name))) {
+        if (Validation.isObjNull(taskToDelete)) {
 
             throw new TaskDoesNotExistException(
                     StatusMessages.ERROR.getMessage("Task you are searching for does not exists"));
         }
 
-        tasks.remove(getTask(name));
-        inbox.getTasks().remove(getTask(name));
-    }
+        tasks.remove(taskToDelete);
+        inbox.getTasks().remove(taskToDelete);
 
-    public Task getTask(String name) {
-        Task taskToGet = tasks.stream()
-                .filter(task -> task.getName().equals(name))
-                .findAny()
-                .orElse(null);
-
-        if (Validation.isObjNull(taskToGet)) {
-            taskToGet = inbox.getTasks().stream()
-                    .filter(task -> task.getName().equals(name))
-                    .findAny()
-                    .orElse(null);
+        LocalDate date = taskToDelete.getDate();
+        Set<Task> onDate = Validation.isObjNull(date) ? null : tasksByDate.get(date);
+        if (!Validation.isObjNull(onDate)) {
+            onDate.remove(taskToDelete);
+            if (onDate.isEmpty()) {
+                tasksByDate.remove(date);
+            }
         }
+        recordChange(name, true);
+    }
 
-        return taskToGet;
+    public Task getTask(String name) {
+        return tasksByName().get(name);
     }
 
     public String listOneTask(String name) throws TaskDoesNotExistException {
@@ -117,114 +166,171 @@ public class User {
     }
 
     public String listTasks() {
+        return tasksListing().render();
+    }
+
+    // the listings take the tasks when they are made and render them one at a time afterwards
+    public Response tasksListing() {
         if ( tasks.size() == 0 && inbox.getTasks().size() == 0) {
-            return "The current user has no tasks !";
+            return Response.of("The current user has no tasks !");
         }
 
-        StringBuilder result = new StringBuilder() ;
+        return new TaskListing()
+                .section(REGULAR_TASKS_HEADER, tasks, TASK_SEPARATOR)
+                .section(INBOX_TASKS_HEADER, inbox.getTasks(), TASK_SEPARATOR);
+    }
 
-        result.append(System.lineSeparator());
-        result.append("Tasks regular : ");
-        result.append(System.lineSeparator());
+    public String listTaskByCompletion(boolean parameter) {
+        return tasksByCompletionListing(parameter).render();
+    }
 
-        for (var task : tasks) {
-            result.append(task.toString());
-            result.append(" ");
+    public Response tasksByCompletionListing(boolean parameter) {
+        if ( tasks.size() == 0 && inbox.getTasks().size() == 0) {
+            return Response.of("The current user has no tasks !");
         }
 
-        result.append(System.lineSeparator());
-        result.append("Tasks inbox : ");
-        result.append(System.lineSeparator());
-
-        for (var task : inbox.getTasks()) {
-            result.append(task.toString());
-            result.append(" ");
-        }
+        return new TaskListing()
+                .section(REGULAR_TASKS_HEADER, tasks, task -> task.getIsCompleted() == parameter, TASK_SEPARATOR)
+                .section(INBOX_TASKS_HEADER, inbox.getTasks(), task -> task.getIsCompleted() == parameter,
+                        TASK_SEPARATOR);
+    }
 
-        return result.toString();
+    public String listDashboard(LocalDate date) throws InvalidParametersException {
+        return dashboardListing(date).render();
     }
 
-    public String listTaskByCompletion(boolean parameter) {
+    public Response dashboardListing(LocalDate date) {
         if ( tasks.size() == 0 && inbox.getTasks().size() == 0) {
-            return "The current user has no tasks !";
+            return Response.of("The current user has no tasks !");
         }
 
-        StringBuilder result = new StringBuilder() ;
-
-        result.append(System.lineSeparator());
-        result.append("Tasks regular : ");
-        result.append(System.lineSeparator());
+        tasksByName();
+        return new TaskListing()
+                .section(REGULAR_TASKS_HEADER, flatten(tasksByDate.headMap(date, true)), TASK_SEPARATOR)
+                .section(INBOX_TASKS_HEADER, inbox.getTasks(), TASK_SEPARATOR);
+    }
 
-        for (var task : tasks) {
-            if (task.getIsCompleted() == parameter) {
-                result.append(task);
-                result.append(" ");
-            }
-        }
+    public String listTasksInRange(LocalDate from, LocalDate to) {
+        return tasksInRangeListing(from, to).render();
+    }
 
-        result.append(System.lineSeparator());
-        result.append("Tasks inbox : ");
-        result.append(System.lineSeparator());
+    public Response tasksInRangeListing(LocalDate from, LocalDate to) {
+        tasksByName();
+        List<Task> inRange = flatten(tasksByDate.subMap(from, true, to, true));
 
-        for (var task : inbox.getTasks()) {
-            if (task.getIsCompleted() == parameter) {
-                result.append(task);
-                result.append(" ");
-            }
+        if (inRange.isEmpty()) {
+            return Response.of("There are no tasks in this period");
         }
+        return new TaskListing().section(REGULAR_TASKS_HEADER, inRange, TASK_SEPARATOR);
+    }
 
-        return result.toString();
+    private static List<Task> flatten(Map<LocalDate, Set<Task>> byDate) {
+        List<Task> result = new ArrayList<>();
+        for (var onDate : byDate.values()) {
+            result.addAll(onDate);
+        }
+        return result;
     }
 
-    public String listDashboard(LocalDate date) throws InvalidParametersException {
-        if ( tasks.size() == 0 && inbox.getTasks().size() == 0) {
-            return "The current user has no tasks !";
+
+    public void finishTask(String name) throws TaskAlreadyExistsException, TaskDoesNotExistException {
+
+        Task taskToFinish = getTask(name);
+        if (Validation.isObjNull(taskToFinish)) {
+            throw new TaskDoesNotExistException(
+                    StatusMessages.ERROR.getMessage("Task you are searching for does not exists"));
         }
-        StringBuilder result = new StringBuilder();
 
-        result.append(System.lineSeparator());
-        result.append("Tasks regular : ");
-        result.append(System.lineSeparator());
-        int counter = 0;
-        for (var task : tasks) {
-            if (Validation.getDateInDateTime(task.getDate()).isBefore(date) ||
-                    Validation.getDateInDateTime(task.getDate()).isEqual(date)) {
+        taskToFinish.setIsCompleted(true);
+        recordChange(name, false);
+    }
+
+    // the tasks changed, finished or deleted after version since; all tasks if those changes are not known
+    public Response changesSince(long since) {
+        boolean isComplete = since >= Math.max(Versions.START, syncFloor) && since <= getVersion();
 
-                result.append(task);
-                result.append(" ");
+        List<Task> changed = new ArrayList<>();
+        StringBuilder deleted = new StringBuilder(DELETED_TASKS_HEADER);
+        if (!isComplete) {
+            changed.addAll(tasks);
+            changed.addAll(inbox.getTasks());
+        }
+        else if (!Validation.isObjNull(changes)) {
+            for (String name : changes.tailMap(since, false).values()) {
+                Task task = getTask(name);
+                if (Validation.isObjNull(task)) {
+                    deleted.append(name).append(System.lineSeparator());
+                }
+                else {
+                    changed.add(task);
+                }
             }
-            counter++;
         }
 
-        result.append(System.lineSeparator());
-        result.append("Tasks inbox : ");
-        result.append(System.lineSeparator());
-
-        for (var task : inbox.getTasks()) {
-            result.append(task);
-            result.append(" ");
+        String versionLine = System.lineSeparator() + "Version : " + getVersion()
+                + (isComplete ? "" : " (all tasks)") + System.lineSeparator();
+        return new TaskListing()
+                .section(versionLine + CHANGED_TASKS_HEADER, changed, task -> !task.getIsCompleted(), TASK_SEPARATOR)
+                .section(FINISHED_TASKS_HEADER, changed, Task::getIsCompleted, TASK_SEPARATOR)
+                .section(deleted.toString(), List.of(), TASK_SEPARATOR);
+    }
 
-            counter++;
+    private void recordChange(String name, boolean isDeleted) {
+        version = Versions.next();
+        if (Validation.isObjNull(changes)) {
+            taskVersions = new HashMap<>();
+            changes = new TreeMap<>();
+            deletedTasks = new LinkedHashSet<>();
         }
 
-        if (counter != 0) {
-            return result.toString();
+        Long previous = taskVersions.put(name, version);
+        if (!Validation.isObjNull(previous)) {
+            changes.remove(previous);
         }
-        else {
-            return "There are no tasks to be done today";
+        changes.put(version, name);
+
+        deletedTasks.remove(name);
+        if (isDeleted) {
+            deletedTasks.add(name);
+            if (deletedTasks.size() > MAX_DELETED_TASKS) {
+                String forgotten = deletedTasks.iterator().next();
+                deletedTasks.remove(forgotten);
+                syncFloor = taskVersions.remove(forgotten);
+                changes.remove(syncFloor);
+            }
         }
     }
 
-
-    public void finishTask(String name) throws TaskAlreadyExistsException, TaskDoesNotExistException {
-
-        Task taskToFinish = getTask(name);
-        deleteTask(name);
-        taskToFinish.setIsCompleted(true);
-        addTask(taskToFinish);
+    // the tasks were replaced as a whole, a sync from before gets all of them
+    private void forgetChanges() {
+        version = Versions.next();
+        taskVersions = null;
+        changes = null;
+        deletedTasks = null;
+        syncFloor = version;
     }
 
+    private Map<String, Task> tasksByName() {
+        if (Validation.isObjNull(tasksByName)) {
+            tasksByName = new HashMap<>();
+            tasksByDate = new TreeMap<>();
+            for (var task : tasks) {
+                tasksByName.putIfAbsent(task.getName(), task);
+                indexByDate(task);
+            }
+            for (var task : inbox.getTasks()) {
+                tasksByName.putIfAbsent(task.getName(), task);
+            }
+        }
+        return tasksByName;
+    }
 
+    private void indexByDate(Task task) {
+        LocalDate date = task.getDate();
+        if (!Validation.isObjNull(date) && !Validation.isObjNull(tasksByDate)) {
+            tasksByDate.computeIfAbsent(date, key -> new LinkedHashSet<>()).add(task);
+        }
+    }
 
     public String toString() {
         return "Name : " + this.username + " Password : " + this.password;
@@ -9,12 +9,8 @@ public class UserValidation extends Validation {
 
     public static boolean checkIfUserExistsInDatabase(Storage database, User user) {
 
-        return database.getUsers()
-                .stream()
-                .anyMatch(other->other.getUsername()
-                        .equals(user.getUsername()) ||
-                        other.getPassword()
-                                .equals(user.getPassword()));
+        return !isObjNull(database.getCurrentUser(user.getUsername())) ||
+                database.isPasswordTaken(user.getPassword());
     }
 
     public static String checkIfPassOrNameProvided(String[] args) {
@@ -0,0 +1,21 @@
+package todolist.user;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Versions of users and collaborations, every change takes the next one from a single counter.
+// The counter starts from the clock when the server starts, so a version a client got before a restart
+// is below START and is never confused with a version of this run.
+public final class Versions {
+    private static final long VERSIONS_PER_MILLISECOND = 1000;
+    private static final AtomicLong LAST = new AtomicLong(System.currentTimeMillis() * VERSIONS_PER_MILLISECOND);
+
+    // the version of everything loaded when the server started
+    public static final long START = LAST.get();
+
+    private Versions() {
+    }
+
+    public static long next() {
+        return LAST.incrementAndGet();
+    }
+}
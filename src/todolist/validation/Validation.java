@@ -15,9 +15,9 @@ public class Validation {
     private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern(PATTERN);
 
 
-    public static boolean checkIfTimeCurrent(String time) throws InvalidParametersException {
+    public static boolean checkIfTimeCurrent(LocalDate date) {
 
-        return getDateInDateTime(time).isAfter(LocalDate.now()) ||  getDateInDateTime(time).isEqual(LocalDate.now()) ;
+        return !date.isBefore(LocalDate.now());
     }
     public static <T> boolean isObjNull(T obj) {
         return obj == null;
@@ -30,9 +30,8 @@ public class Validation {
 
     public static boolean checkIfUserCorrectInDatabase(Database database, User user) {
 
-        return database.getUsers()
-                .stream()
-                .anyMatch(other->other.equals(user));
+        User registered = database.getCurrentUser(user.getUsername());
+        return !isObjNull(registered) && registered.equals(user);
 
     }
 
@@ -49,6 +48,10 @@ public class Validation {
         }
     }
 
+    public static String formatDate(LocalDate date) {
+        return DATE_FORMAT.format(date);
+    }
+
 
 
 
@@ -4,8 +4,12 @@ import org.junit.jupiter.api.Test;
 import todolist.command.Command;
 import todolist.command.CommandCreator;
 
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 public class CommandCreatorTest {
 
@@ -30,4 +34,25 @@ public class CommandCreatorTest {
         assertEquals(command.split(" ")[1], cmd.arguments()[0], "unexpected argument returned for command 'test abcd'");
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCommandCreationInsideByteRange() {
+        byte[] input = "ignored\nadd-task  \u0437\u0430\u0434\u0430\u0447\u0430 1/1/2099\nignored".getBytes(StandardCharsets.UTF_8);
+        int offset = "ignored\n".length();
+        int length = "add-task  \u0437\u0430\u0434\u0430\u0447\u0430 1/1/2099".getBytes(StandardCharsets.UTF_8).length;
+
+        Command cmd = CommandCreator.newCommand(input, offset, length);
+
+        assertSame(CommandsList.ADD_TASK, cmd.command(), "a known command should be the CommandsList constant");
+        assertArrayEquals(new String[]{"", "\u0437\u0430\u0434\u0430\u0447\u0430", "1/1/2099"}, cmd.arguments(),
+                "unexpected arguments for command 'add-task  \u0437\u0430\u0434\u0430\u0447\u0430 1/1/2099'");
+    }
+
+    @Test
+    public void testCommandCreationWithTrailingSpace() {
+        Command cmd = CommandCreator.newCommand("unknown ");
+
+        assertEquals("unknown", cmd.command(), "unexpected command returned for command 'unknown '");
+        assertArrayEquals(new String[]{""}, cmd.arguments(), "unexpected arguments for command 'unknown '");
+    }
+
+}
@@ -1,6 +1,9 @@
 package todolist.command;
 
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -13,18 +16,25 @@ import todolist.exceptions.InvalidParametersException;
 import todolist.exceptions.TaskAlreadyExistsException;
 import todolist.messagesstatus.StatusMessages;
 import todolist.order.TaskFactory;
+import todolist.response.Response;
+import todolist.response.ResponseCache;
+import todolist.response.TaskListing;
 import todolist.user.User;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static todolist.command.CommandsList.ADD_COLLABORATION;
 import static todolist.command.CommandsList.ADD_TASK;
 import static todolist.command.CommandsList.ADD_USER_TO_COLLABORATION;
 import static todolist.command.CommandsList.ASSIGN_TASK_COLLABORATION;
+import static todolist.command.CommandsList.BATCH;
 import static todolist.command.CommandsList.DELETE_COLLABORATION;
 import static todolist.command.CommandsList.DELETE_TASK;
+import static todolist.command.CommandsList.END_BATCH;
 import static todolist.command.CommandsList.FINISH_TASK;
 import static todolist.command.CommandsList.GET_TASK;
 import static todolist.command.CommandsList.LIST_COLLABORATIONS;
@@ -35,6 +45,8 @@ import static todolist.command.CommandsList.LIST_USERS_COLLABORATIONS;
 import static todolist.command.CommandsList.LOGIN;
 import static todolist.command.CommandsList.LOGOUT;
 import static todolist.command.CommandsList.REGISTER;
+import static todolist.command.CommandsList.SUBSCRIBE;
+import static todolist.command.CommandsList.SYNC;
 import static todolist.command.CommandsList.UPDATE_TASK;
 
 public class CommandExecutorTest {
@@ -392,6 +404,98 @@ public class CommandExecutorTest {
         assertEquals(expected, actual, "Unexpected output for ' list tasks '");
     }
 
+    @Test
+    public void testListTasksIsRenderedPieceByPiece() throws TaskAlreadyExistsException, InvalidParametersException, DatePeriodException {
+        Command command = new Command(LIST_TASKS, new String[]{});
+
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, new User(testUsername, testUserPass));
+        for (int i = 0; i < 3; i++) {
+            cmdExecutor.getCurrentUser(mockClientChannel).addTask(
+                    TaskFactory.createTask(new String[]{"task" + i, "12/3/2099"}));
+        }
+
+        Response response = cmdExecutor.getCurrentUser(mockClientChannel).tasksListing();
+        StringBuilder rendered = new StringBuilder();
+        int pieces = 0;
+        while (response.renderNext(rendered)) {
+            pieces++;
+        }
+
+        assertTrue(pieces > 3, "Every task should be a piece of its own");
+        assertEquals(cmdExecutor.execute(mockClientChannel, command), rendered.toString(),
+                "Rendering piece by piece should give the whole listing");
+        assertFalse(response.renderNext(rendered), "A rendered response should stay complete");
+    }
+
+    @Test
+    public void testSyncReturnsOnlyTheChangesSinceTheVersion() throws TaskAlreadyExistsException, InvalidParametersException, DatePeriodException {
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, new User(testUsername, testUserPass));
+        User user = cmdExecutor.getCurrentUser(mockClientChannel);
+        user.addTask(TaskFactory.createTask(new String[]{"kept", "12/3/2099"}));
+        user.addTask(TaskFactory.createTask(new String[]{"finished", "12/3/2099"}));
+        user.addTask(TaskFactory.createTask(new String[]{"deleted", "12/3/2099"}));
+
+        String full = cmdExecutor.execute(mockClientChannel, new Command(SYNC, new String[]{}));
+        assertTrue(full.contains("(all tasks)") && full.contains("Name : kept"),
+                "A sync without a version should return every task");
+
+        String version = full.split("Version : ")[1].split("\\s")[0];
+        cmdExecutor.execute(mockClientChannel, new Command(FINISH_TASK, new String[]{"finished"}));
+        cmdExecutor.execute(mockClientChannel, new Command(DELETE_TASK, new String[]{"deleted"}));
+        cmdExecutor.execute(mockClientChannel, new Command(ADD_TASK, new String[]{"added", "12/3/2099"}));
+
+        String delta = cmdExecutor.execute(mockClientChannel, new Command(SYNC, new String[]{version}));
+        assertFalse(delta.contains("(all tasks)") || delta.contains("Name : kept"),
+                "Tasks not changed since the version should not be returned");
+        assertTrue(delta.contains("Name : added"), "An added task should be returned");
+        assertTrue(delta.split("Tasks finished : ")[1].contains("Name : finished"),
+                "A finished task should be returned as finished");
+        assertTrue(delta.split("Tasks deleted : ")[1].contains("deleted"), "A deleted task should be named");
+        assertEquals(String.valueOf(user.getVersion()), delta.split("Version : ")[1].split("\\s")[0],
+                "The sync should return the current version");
+    }
+
+    @Test
+    public void testListTasksIsCachedUntilTheTasksChange() throws TaskAlreadyExistsException, InvalidParametersException, DatePeriodException {
+        Command command = new Command(LIST_TASKS, new String[]{});
+
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, new User(testUsername, testUserPass));
+        User user = cmdExecutor.getCurrentUser(mockClientChannel);
+        user.addTask(TaskFactory.createTask(new String[]{"task1", "12/3/2099"}));
+
+        String first = cmdExecutor.execute(mockClientChannel, command);
+        String second = cmdExecutor.execute(mockClientChannel, command);
+        assertEquals(first, second, "A cached listing should not differ from the rendered one");
+        assertEquals(1, cmdExecutor.getResponseCacheMetrics().getHits(), "The second listing should be a hit");
+
+        user.addTask(TaskFactory.createTask(new String[]{"task2", "12/3/2099"}));
+        String afterChange = cmdExecutor.execute(mockClientChannel, command);
+        assertTrue(afterChange.contains("task2"), "A change of the tasks should invalidate the cached listing");
+        assertEquals(1, cmdExecutor.getResponseCacheMetrics().getInvalidations(),
+                "The stale listing should be counted as invalidated");
+    }
+
+    @Test
+    public void testLargeListingIsStreamedNotCached() throws TaskAlreadyExistsException, InvalidParametersException, DatePeriodException {
+        Command command = new Command(LIST_TASKS, new String[]{});
+
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, new User(testUsername, testUserPass));
+        User user = cmdExecutor.getCurrentUser(mockClientChannel);
+        for (int i = 0; i <= ResponseCache.MAX_ENTRY_TASKS; i++) {
+            user.addTask(TaskFactory.createTask(new String[]{"task" + i, "12/3/2099"}));
+        }
+
+        assertTrue(cmdExecutor.respond(mockClientChannel, command) instanceof TaskListing,
+                "A large listing should be streamed as it is rendered");
+        assertTrue(cmdExecutor.respond(mockClientChannel, command) instanceof TaskListing,
+                "A large listing should not be served from the cache");
+        assertEquals(0, cmdExecutor.getResponseCacheMetrics().getHits(), "A large listing should not be kept");
+    }
+
 
     @Test
     public void testListTasksUserErrorUnavailableCountOfSpecifiers() throws TaskAlreadyExistsException, InvalidParametersException {
@@ -563,6 +667,53 @@ public class CommandExecutorTest {
         assertEquals(expected, actual, "Unexpected output for ' list tasks '");
     }
 
+    @Test
+    public void testListTasksUserParameterRangeHasTasks() throws TaskAlreadyExistsException, InvalidParametersException, DatePeriodException {
+
+
+        Command command = new Command(LIST_TASKS, new String[]{"range", "1/1/2099", "31/1/2099"});
+
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, new User(testUsername, testUserPass));
+        cmdExecutor.getCurrentUser(mockClientChannel).addTask(
+                TaskFactory.createTask(new String[]{"task2", "20/1/2099"}));
+        cmdExecutor.getCurrentUser(mockClientChannel).addTask(
+                TaskFactory.createTask(new String[]{"task1", "10/1/2099"}));
+        cmdExecutor.getCurrentUser(mockClientChannel).addTask(
+                TaskFactory.createTask(new String[]{"task3", "1/2/2099"}));
+
+
+        String actual = cmdExecutor.execute(mockClientChannel, command);
+
+        String expected = System.lineSeparator() +
+                "Tasks regular : " +  System.lineSeparator() +
+                System.lineSeparator() +
+                "Name : task1" +  System.lineSeparator() +
+                "Date : 10/1/2099" +  System.lineSeparator() +
+                " " +
+                System.lineSeparator() +
+                "Name : task2" +  System.lineSeparator() +
+                "Date : 20/1/2099" +  System.lineSeparator() +
+                " ";
+
+        assertEquals(expected, actual, "Unexpected output for ' list tasks '");
+    }
+
+    @Test
+    public void testListTasksUserParameterRangeReversed() throws TaskAlreadyExistsException, InvalidParametersException {
+
+
+        Command command = new Command(LIST_TASKS, new String[]{"range", "31/1/2099", "1/1/2099"});
+
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, new User(testUsername, testUserPass));
+        String actual = cmdExecutor.execute(mockClientChannel, command);
+
+        String expected = StatusMessages.ERROR.getMessage("The beginning of the range must not be after its end");
+
+        assertEquals(expected, actual, "Unexpected output for ' list tasks '");
+    }
+
     @Test
     public void testDeleteTaskUserCommandErrorNoArguments() throws TaskAlreadyExistsException, InvalidParametersException {
 
@@ -1079,6 +1230,37 @@ public class CommandExecutorTest {
     }
 
 
+    @Test
+    public void testAssignmentIsPushedToSubscribedMembers() throws TaskAlreadyExistsException, InvalidParametersException {
+        User creator = new User(testUsername, testUserPass);
+        User member = new User("member", "memberPass");
+        Collaboration collaboration = new Collaboration(collaborationName, creator);
+        collaboration.addUser(member);
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        when(storage.getCollaboration(collaborationName)).thenReturn(collaboration);
+        when(storage.getCurrentUser("member")).thenReturn(member);
+        when(storage.durabilityBarrier()).thenReturn(CompletableFuture.completedFuture(null));
+
+        List<String> events = new ArrayList<>();
+        Session subscriber = new Session(mockClientChannel);
+        subscriber.logIn(member);
+        subscriber.setEventSink(event -> events.add(event.frame().render()));
+        String subscribed = cmdExecutor.execute(subscriber, new Command(SUBSCRIBE, new String[]{collaborationName}));
+        assertEquals(StatusMessages.SUCCESS.getMessage(String.format(
+                "Subscribed to the changes of collaboration (%s)", collaborationName)), subscribed,
+                "A member should be able to subscribe");
+
+        cmdExecutor.execute(mockClientChannel,
+                new Command(ASSIGN_TASK_COLLABORATION, new String[]{collaborationName, "member", "task"}));
+        assertEquals(List.of(ASSIGN_TASK_COLLABORATION + " " + collaborationName + " member task"), events,
+                "The subscriber should get the assignment");
+
+        subscriber.logOut();
+        cmdExecutor.execute(mockClientChannel,
+                new Command(ASSIGN_TASK_COLLABORATION, new String[]{collaborationName, "member", "other"}));
+        assertEquals(1, events.size(), "A logged out subscriber should not get events");
+    }
+
     @Test
     public void testListTasksCollaborationsUserCommandNoArguments() throws TaskAlreadyExistsException, InvalidParametersException {
 
@@ -1157,10 +1339,45 @@ public class CommandExecutorTest {
         assertEquals(expected, actual, "Unexpected output for ' listing from  collaboration '");
     }
 
+    @Test
+    public void testBatchRunsQueuedCommandsAtEnd() throws TaskAlreadyExistsException, InvalidParametersException {
+        User user = new User(testUsername, testUserPass);
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, user);
+
+        cmdExecutor.execute(mockClientChannel, new Command(BATCH, new String[]{}));
+        String queued = cmdExecutor.execute(mockClientChannel, new Command(ADD_TASK, new String[]{"task1"}));
+        cmdExecutor.execute(mockClientChannel, new Command(FINISH_TASK, new String[]{"task1"}));
 
+        assertEquals(StatusMessages.SUCCESS.getMessage("Command 1 has been added to the batch"), queued,
+                "Unexpected output for ' queuing a command '");
+        assertNull(user.getTask("task1"), "A queued command must not run before end-batch");
 
+        String actual = cmdExecutor.execute(mockClientChannel, new Command(END_BATCH, new String[]{}));
 
+        assertTrue(actual.startsWith(StatusMessages.SUCCESS.getMessage("Batch of 2 commands has been executed")),
+                "Unexpected output for ' ending a batch '");
+        assertTrue(user.getTask("task1").getIsCompleted());
+    }
 
+    @Test
+    public void testBatchIsUndoneWhenACommandFails() throws TaskAlreadyExistsException, InvalidParametersException,
+            DatePeriodException {
+        User user = new User(testUsername, testUserPass);
+        user.addTask(TaskFactory.createTask(new String[]{"kept"}));
+        when(storage.isItAccessible(mockClientChannel)).thenReturn(true);
+        cmdExecutor.addToChannelsForUsers(mockClientChannel, user);
 
+        cmdExecutor.execute(mockClientChannel, new Command(BATCH, new String[]{}));
+        cmdExecutor.execute(mockClientChannel, new Command(ADD_TASK, new String[]{"task1"}));
+        cmdExecutor.execute(mockClientChannel, new Command(FINISH_TASK, new String[]{"kept"}));
+        cmdExecutor.execute(mockClientChannel, new Command(DELETE_TASK, new String[]{"missing"}));
+        String actual = cmdExecutor.execute(mockClientChannel, new Command(END_BATCH, new String[]{}));
 
+        assertTrue(actual.startsWith(StatusMessages.ERROR.getMessage(
+                "Command 3 of the batch failed, none of its changes have been made")),
+                "Unexpected output for ' ending a failing batch '");
+        assertNull(user.getTask("task1"));
+        assertFalse(user.getTask("kept").getIsCompleted());
+    }
 }
\ No newline at end of file
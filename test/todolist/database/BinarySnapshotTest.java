@@ -0,0 +1,79 @@
+package todolist.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.collaboration.Collaboration;
+import todolist.exceptions.DatePeriodException;
+import todolist.exceptions.InvalidParametersException;
+import todolist.exceptions.TaskAlreadyExistsException;
+import todolist.order.TaskFactory;
+import todolist.user.User;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BinarySnapshotTest {
+
+    private File tempFileData;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tempFileData = File.createTempFile("tempDatabase", ".bin");
+    }
+
+    @AfterEach
+    public void resetDown() {
+        new WriteAheadLog(WriteAheadLog.logFileFor(tempFileData)).delete();
+        tempFileData.delete();
+    }
+
+    @Test
+    void testRoundTripKeepsUsersTasksAndCollaborations() throws TaskAlreadyExistsException,
+            DatePeriodException, InvalidParametersException {
+        User temp = new User("tempName", "tempPass");
+        temp.addTask(TaskFactory.createTask(new String[]{"binaryTask", "1/1/2099", "2/1/2099", "some", "text"}));
+        User other = new User("otherName", "otherPass");
+        Collaboration collaboration = new Collaboration("tempCollaboration", temp);
+        collaboration.addUser(other);
+        collaboration.assignTask(other, TaskFactory.createTask(new String[]{"assigned"}));
+
+        BinarySnapshot.write(tempFileData, List.of(temp, other), List.of(collaboration));
+
+        List<User> users = new ArrayList<>();
+        List<Collaboration> collaborations = new ArrayList<>();
+        SnapshotFormat.detect(tempFileData).read(tempFileData, users::add, collaborations::add, false);
+
+        assertTrue(BinarySnapshot.isBinarySnapshot(tempFileData));
+        assertEquals(2, users.size());
+        assertEquals(LocalDate.of(2099, 1, 1), users.get(0).getTask("binaryTask").getDate());
+        assertEquals(LocalDate.of(2099, 1, 2), users.get(0).getTask("binaryTask").getDueDate());
+        assertEquals("some text ", users.get(0).getTask("binaryTask").getDescription());
+        assertFalse(users.get(0).getTask("binaryTask").getIsCompleted());
+
+        Collaboration loaded = collaborations.get(0);
+        assertEquals("tempCollaboration", loaded.getName());
+        assertSame(users.get(1), loaded.getUsers().get(1));
+        assertEquals("assigned", loaded.getAssigneeTasks().get(0).task().getName());
+        assertNull(loaded.getAssigneeTasks().get(0).task().getDate());
+    }
+
+    @Test
+    void testDatabaseStartsFromBinarySnapshot() {
+        BinarySnapshot.write(tempFileData, List.of(new User("tempName", "tempPass")), List.of());
+
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+
+        assertEquals("tempPass", storage.getCurrentUser("tempName").getPassword());
+    }
+}
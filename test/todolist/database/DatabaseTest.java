@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
@@ -21,6 +22,7 @@ import static todolist.command.CommandsList.UPDATE_TASK;
 import todolist.collaboration.Collaboration;
 import todolist.command.Command;
 import todolist.command.CommandExecutor;
+import todolist.command.Session;
 import todolist.exceptions.CollaborationNotCreatorException;
 import todolist.exceptions.CollaborationNotExistException;
 import todolist.exceptions.InvalidParametersException;
@@ -34,11 +36,19 @@ import todolist.user.User;
 import java.io.File;
 import java.io.IOException;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class DatabaseTest {
 
     private Storage storage;
 
+    private Database database;
+
     private File tempFileData;
 
     private SocketChannel mockClientChannel;
@@ -51,7 +61,8 @@ public class DatabaseTest {
     @BeforeEach
     public void setUp() throws IOException {
         tempFileData = File.createTempFile("tempDatabase", ".txt");
-        storage = Database.getInstanceWithCustomFile(tempFileData);
+        database = Database.getInstanceWithCustomFile(tempFileData);
+        storage = database;
         mockClientChannel = mock(SocketChannel.class);
         cmdExecutor = new CommandExecutor(storage);
 
@@ -59,7 +70,9 @@ public class DatabaseTest {
 
     @AfterEach
     public void resetDown() {
-        tempFileData.deleteOnExit();
+        database.close();
+        new WriteAheadLog(WriteAheadLog.logFileFor(tempFileData)).delete();
+        tempFileData.delete();
     }
 
     @Test
@@ -111,6 +124,19 @@ public class DatabaseTest {
         assertTrue(storage.logout(mockClientChannel, temp));
     }
 
+    @Test
+    void testDisconnectReleasesLogin() throws
+            UserAlreadyExistsException, UserAlreadyLoggedException, UserDoesNotExistException {
+        storage.register(temp);
+        storage.logIn(temp, mockClientChannel);
+        storage.disconnect(mockClientChannel);
+
+        assertFalse(storage.isItAccessible(mockClientChannel));
+        SocketChannel otherClientChannel = mock(SocketChannel.class);
+        assertEquals(storage.logIn(temp, otherClientChannel), temp);
+        assertTrue(storage.isItAccessible(otherClientChannel));
+    }
+
     @Test
     void testUpdateTaskOfUsersInDatabase() throws
             TaskAlreadyExistsException, InvalidParametersException {
@@ -149,6 +175,29 @@ public class DatabaseTest {
         assertEquals(expected ,actual);
     }
 
+    @Test
+    void testListCollaborationsOnlyMembership ()
+            throws UserAlreadyExistsException, CollaborationNotCreatorException, CollaborationNotExistException {
+        User other = new User("otherUser", "otherPass");
+        storage.register(temp);
+        storage.register(other);
+        storage.addCollaboration(new Collaboration("tempName", temp));
+        storage.addCollaboration(new Collaboration("otherName", other));
+
+        Collaboration shared = new Collaboration("sharedName", other);
+        storage.addCollaboration(shared);
+        shared.addUser(temp);
+        storage.updateCollaborationsDatabase(shared);
+        storage.deleteCollaboration("otherName", other);
+
+        String expected = System.lineSeparator() +
+                "tempName" + System.lineSeparator() +
+                "sharedName" + System.lineSeparator();
+        assertEquals(expected, storage.listCollaboration(temp));
+        assertEquals(System.lineSeparator() + "sharedName" + System.lineSeparator(),
+                storage.listCollaboration(other));
+    }
+
     @Test
     void testDeleteCollaboration ()
             throws UserAlreadyExistsException, UserAlreadyLoggedException,
@@ -263,5 +312,57 @@ public class DatabaseTest {
 
     }
 
+    @Test
+    void testConcurrentSessionsKeepEveryChange() throws TaskAlreadyExistsException, InvalidParametersException,
+            UserAlreadyExistsException, InterruptedException, ExecutionException {
+        final int sessions = 8;
+        final int tasksPerSession = 50;
+        final String collaborationName = "sharedCollaboration";
 
+        cmdExecutor.execute(mockClientChannel, new Command(REGISTER,
+                new String[]{temp.getUsername(), temp.getPassword()}));
+        cmdExecutor.execute(mockClientChannel, new Command(LOGIN,
+                new String[]{temp.getUsername(), temp.getPassword()}));
+        cmdExecutor.execute(mockClientChannel, new Command(ADD_COLLABORATION, new String[]{collaborationName}));
+        for (int i = 0; i < sessions; i++) {
+            storage.register(new User("user" + i, "pass" + i));
+            cmdExecutor.execute(mockClientChannel, new Command(ADD_USER_TO_COLLABORATION,
+                    new String[]{collaborationName, "user" + i}));
+        }
+
+        ExecutorService threads = Executors.newFixedThreadPool(sessions);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            String username = "user" + i;
+            String password = "pass" + i;
+            results.add(threads.submit(() -> {
+                Session session = new Session(mock(SocketChannel.class));
+                cmdExecutor.execute(session, new Command(LOGIN, new String[]{username, password}));
+                for (int j = 0; j < tasksPerSession; j++) {
+                    cmdExecutor.execute(session, new Command(ADD_TASK, new String[]{"task" + j}));
+                    cmdExecutor.execute(session, new Command(ASSIGN_TASK_COLLABORATION,
+                            new String[]{collaborationName, username, username + "task" + j}));
+                }
+                return null;
+            }));
+        }
+        for (var result : results) {
+            result.get();
+        }
+        threads.shutdown();
+        storage.durabilityBarrier().join();
+
+        Database reloaded = Database.getInstanceWithCustomFile(tempFileData);
+        for (var loaded : List.of(storage, reloaded)) {
+            for (int i = 0; i < sessions; i++) {
+                User user = loaded.getCurrentUser("user" + i);
+                for (int j = 0; j < tasksPerSession; j++) {
+                    assertEquals("task" + j, user.getTask("task" + j).getName());
+                }
+            }
+            assertEquals(sessions * tasksPerSession,
+                    loaded.getCollaboration(collaborationName).getAssigneeTasks().size());
+        }
+        reloaded.close();
+    }
 }
@@ -0,0 +1,97 @@
+package todolist.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.collaboration.Collaboration;
+import todolist.user.User;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class DatasetLoaderTest {
+
+    private File tempFileData;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tempFileData = File.createTempFile("tempDatabase", ".txt");
+    }
+
+    @AfterEach
+    public void resetDown() {
+        tempFileData.delete();
+    }
+
+    @Test
+    void testLoadsUsersAndCollaborationsRecordByRecord() throws IOException {
+        try (FileWriter writer = new FileWriter(tempFileData)) {
+            writer.write("[{\"inbox\":{\"tasks\":[{\"name\":\"sleep\",\"isCompleted\":true}]},\"tasks\":[]," +
+                    "\"username\":\"david\",\"password\":\"pass\"},{\"inbox\":{\"tasks\":[]},\"tasks\":[]," +
+                    "\"username\":\"robi\",\"password\":\"123\"}]");
+            writer.write(System.lineSeparator());
+            writer.write("[{\"name\":\"project\",\"creator\":{\"username\":\"david\",\"password\":\"pass\"}," +
+                    "\"users\":[],\"assigneeTasks\":[]}]");
+        }
+
+        List<User> users = new ArrayList<>();
+        List<Collaboration> collaborations = new ArrayList<>();
+        DatasetLoader loader = new DatasetLoader(tempFileData, false);
+        loader.load(User.class, users::add, Collaboration.class, collaborations::add);
+
+        assertEquals(2, users.size());
+        assertEquals("sleep", users.get(0).getTask("sleep").getName());
+        assertEquals(1, collaborations.size());
+        assertEquals("project", collaborations.get(0).getName());
+        assertEquals(3, loader.getRecords());
+    }
+
+    @Test
+    void testLoadsEmptyFile() {
+        List<User> users = new ArrayList<>();
+        List<Collaboration> collaborations = new ArrayList<>();
+        DatasetLoader loader = new DatasetLoader(tempFileData, false);
+        loader.load(User.class, users::add, Collaboration.class, collaborations::add);
+
+        assertEquals(0, users.size());
+        assertEquals(0, loader.getRecords());
+    }
+
+    @Test
+    void testLoadsUsersWithoutCollaborationsLine() throws IOException {
+        try (FileWriter writer = new FileWriter(tempFileData)) {
+            writer.write("[{\"inbox\":{\"tasks\":[]},\"tasks\":[],\"username\":\"robi\",\"password\":\"123\"}]");
+        }
+
+        List<User> users = new ArrayList<>();
+        List<Collaboration> collaborations = new ArrayList<>();
+        new DatasetLoader(tempFileData, false).load(User.class, users::add, Collaboration.class, collaborations::add);
+
+        assertEquals(1, users.size());
+        assertEquals(0, collaborations.size());
+    }
+
+    @Test
+    void testLoadsTaskDatesWrittenAsText() throws IOException {
+        try (FileWriter writer = new FileWriter(tempFileData)) {
+            writer.write("[{\"inbox\":{\"tasks\":[]},\"tasks\":[{\"name\":\"exam\",\"date\":\"2/06/2099\"," +
+                    "\"dueDate\":\"14/6/2099\",\"isCompleted\":false}],\"username\":\"robi\",\"password\":\"123\"}]");
+        }
+
+        List<User> users = new ArrayList<>();
+        List<Collaboration> collaborations = new ArrayList<>();
+        new DatasetLoader(tempFileData, false).load(User.class, users::add, Collaboration.class, collaborations::add);
+
+        assertEquals(LocalDate.of(2099, 6, 2), users.get(0).getTask("exam").getDate());
+        assertEquals(LocalDate.of(2099, 6, 14), users.get(0).getTask("exam").getDueDate());
+        assertEquals(System.lineSeparator() + "Name : exam" + System.lineSeparator() +
+                "Date : 2/6/2099" + System.lineSeparator() +
+                "Due Date : 14/6/2099" + System.lineSeparator(), users.get(0).getTask("exam").toString());
+    }
+}
@@ -0,0 +1,126 @@
+package todolist.database;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.collaboration.Collaboration;
+import todolist.exceptions.DatePeriodException;
+import todolist.exceptions.InvalidParametersException;
+import todolist.exceptions.TaskAlreadyExistsException;
+import todolist.exceptions.UserAlreadyExistsException;
+import todolist.order.TaskFactory;
+import todolist.user.User;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotCompactorTest {
+
+    private File tempFileData;
+
+    private WriteAheadLog tempLog;
+
+    private Database database;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tempFileData = File.createTempFile("tempDatabase", ".txt");
+        tempLog = new WriteAheadLog(WriteAheadLog.logFileFor(tempFileData));
+        database = Database.getInstanceWithCustomFile(tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+    }
+
+    @AfterEach
+    public void resetDown() {
+        tempLog.delete();
+        tempFileData.delete();
+    }
+
+    @Test
+    void testCompactionFoldsLogIntoSnapshot() throws UserAlreadyExistsException,
+            TaskAlreadyExistsException, DatePeriodException, InvalidParametersException {
+        User temp = new User("tempName", "tempPass");
+        database.register(temp);
+        for (int i = 0; i < 10; i++) {
+            temp.addTask(TaskFactory.createTask(new String[]{"compactedTask" + i, "1/1/2099"}));
+            database.updateUsersDatabase(temp);
+        }
+        database.addCollaboration(new Collaboration("tempCollaboration", temp));
+
+        database.getCompactor().compact();
+
+        assertTrue(tempFileData.length() > 0);
+        assertFalse(tempLog.getFile().exists());
+        assertTrue(tempLog.sealedSegments().isEmpty());
+        assertEquals(1, database.getCompactor().getMetrics().getCompactions());
+        assertTrue(database.getCompactor().getMetrics().getLastBytesReclaimed() > 0);
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        assertEquals(10, reloaded.getCurrentUser("tempName").getTasks().size());
+        assertNotNull(reloaded.getCollaboration("tempCollaboration"));
+    }
+
+    @Test
+    void testCompactionAppliesTaskRecords() throws UserAlreadyExistsException,
+            TaskAlreadyExistsException, DatePeriodException, InvalidParametersException {
+        User temp = new User("tempName", "tempPass");
+        database.register(temp);
+        for (int i = 0; i < 10; i++) {
+            temp.addTask(TaskFactory.createTask(new String[]{"compactedTask" + i, "1/1/2099"}));
+            database.updateUserTask(temp, "compactedTask" + i);
+        }
+
+        database.getCompactor().compact();
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        assertEquals(10, reloaded.getCurrentUser("tempName").getTasks().size());
+    }
+
+    @Test
+    void testCorruptSegmentIsNotCompacted() throws UserAlreadyExistsException, IOException {
+        database.register(new User("tempName", "tempPass"));
+        database.durabilityBarrier().join();
+        try (FileWriter writer = new FileWriter(tempLog.getFile(), true)) {
+            writer.write("{\"operation\":\"REGISTER_USER\",\"payl" + System.lineSeparator());
+        }
+        database.register(new User("otherName", "otherPass"));
+        database.durabilityBarrier().join();
+
+        assertThrows(UncheckedIOException.class, () -> database.getCompactor().compact());
+
+        assertEquals(0, tempFileData.length(), "a corrupt segment must not be folded into the snapshot");
+        assertEquals(1, tempLog.sealedSegments().size(), "a corrupt segment must be kept");
+    }
+
+    @Test
+    void testWritesAfterRotationSurviveCompaction() throws UserAlreadyExistsException {
+        database.register(new User("tempName", "tempPass"));
+        database.getCompactor().compact();
+        database.register(new User("otherName", "otherPass"));
+        database.durabilityBarrier().join();
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        assertEquals(2, reloaded.getUsers().size());
+    }
+
+    @Test
+    void testPolicyIsDueOnAnyLimit() {
+        CompactionPolicy policy = new CompactionPolicy(100, 10, 60);
+
+        assertFalse(policy.isDue(1000, 0, 1000));
+        assertTrue(policy.isDue(100, 1, 0));
+        assertTrue(policy.isDue(1, 10, 0));
+        assertTrue(policy.isDue(1, 1, 60));
+        assertFalse(policy.isDue(1, 1, 1));
+    }
+}
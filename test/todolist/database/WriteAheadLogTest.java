@@ -0,0 +1,272 @@
+package todolist.database;
+
+import com.google.gson.JsonPrimitive;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.collaboration.Collaboration;
+import todolist.exceptions.CollaborationNotCreatorException;
+import todolist.exceptions.CollaborationNotExistException;
+import todolist.exceptions.DatePeriodException;
+import todolist.exceptions.InvalidParametersException;
+import todolist.exceptions.TaskAlreadyExistsException;
+import todolist.exceptions.TaskDoesNotExistException;
+import todolist.exceptions.UserAlreadyExistsException;
+import todolist.order.TaskFactory;
+import todolist.user.User;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+
+    private File tempFileData;
+
+    private File tempFileLog;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        tempFileData = File.createTempFile("tempDatabase", ".txt");
+        tempFileLog = WriteAheadLog.logFileFor(tempFileData);
+    }
+
+    @AfterEach
+    public void resetDown() {
+        new WriteAheadLog(tempFileLog).delete();
+        tempFileData.delete();
+    }
+
+    @Test
+    void testMutationsAreAppendedNotRewritten() throws UserAlreadyExistsException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        storage.register(new User("tempName", "tempPass"));
+        storage.register(new User("otherName", "otherPass"));
+        storage.durabilityBarrier().join();
+
+        assertEquals(0, tempFileData.length(), "snapshot must not be rewritten in WAL mode");
+        assertTrue(tempFileLog.length() > 0);
+    }
+
+    @Test
+    void testReplayRestoresUsersTasksAndCollaborations() throws UserAlreadyExistsException,
+            TaskAlreadyExistsException, DatePeriodException, InvalidParametersException,
+            CollaborationNotExistException, CollaborationNotCreatorException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        User temp = new User("tempName", "tempPass");
+        User other = new User("otherName", "otherPass");
+        storage.register(temp);
+        storage.register(other);
+        // without a date the task goes to the user's inbox
+        temp.addTask(TaskFactory.createTask(new String[]{"task1"}));
+        temp.addTask(TaskFactory.createTask(new String[]{"walTask", "1/1/2099"}));
+        storage.updateUsersDatabase(temp);
+        storage.addCollaboration(new Collaboration("kept", temp));
+        storage.addCollaboration(new Collaboration("deleted", temp));
+        storage.deleteCollaboration("deleted", temp);
+        storage.durabilityBarrier().join();
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+
+        assertNotNull(reloaded.getCurrentUser("tempName"));
+        assertNotNull(reloaded.getCurrentUser("tempName").getTask("task1"));
+        assertEquals(1, reloaded.getCurrentUser("tempName").getInbox().getTasks().size());
+        assertTrue(reloaded.getCurrentUser("otherName").getInbox().getTasks().isEmpty(),
+                "inbox tasks must not leak to other users");
+        assertNotNull(reloaded.getCurrentUser("tempName").getTask("walTask"));
+        assertNotNull(reloaded.getCollaboration("kept"));
+        assertNull(reloaded.getCollaboration("deleted"));
+    }
+
+    @Test
+    void testTaskRecordsReplayOnTopOfTheUser() throws UserAlreadyExistsException,
+            TaskAlreadyExistsException, TaskDoesNotExistException, DatePeriodException, InvalidParametersException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        User temp = new User("tempName", "tempPass");
+        storage.register(temp);
+        for (String name : new String[]{"kept", "finished", "deleted"}) {
+            temp.addTask(TaskFactory.createTask(new String[]{name, "1/1/2099"}));
+            storage.updateUserTask(temp, name);
+        }
+        temp.finishTask("finished");
+        storage.updateUserTask(temp, "finished");
+        temp.deleteTask("deleted");
+        storage.updateUserTask(temp, "deleted");
+        storage.durabilityBarrier().join();
+
+        User reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED).getCurrentUser("tempName");
+
+        assertEquals(2, reloaded.getTasks().size());
+        assertNotNull(reloaded.getTask("kept"));
+        assertTrue(reloaded.getTask("finished").getIsCompleted());
+        assertNull(reloaded.getTask("deleted"));
+    }
+
+    @Test
+    void testTaskBatchIsOneRecord() throws UserAlreadyExistsException,
+            TaskAlreadyExistsException, DatePeriodException, InvalidParametersException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        User temp = new User("tempName", "tempPass");
+        storage.register(temp);
+        temp.addTask(TaskFactory.createTask(new String[]{"first", "1/1/2099"}));
+        temp.addTask(TaskFactory.createTask(new String[]{"second"}));
+        storage.updateUserTasks(temp, List.of("first", "second", "neverAdded"));
+        storage.durabilityBarrier().join();
+
+        assertEquals(2, WriteAheadLog.replaySegment(tempFileLog, record -> { }));
+        User reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED).getCurrentUser("tempName");
+        assertNotNull(reloaded.getTask("first"));
+        assertNotNull(reloaded.getTask("second"));
+    }
+
+    @Test
+    void testTornLastRecordIsIgnored() throws UserAlreadyExistsException, IOException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        storage.register(new User("tempName", "tempPass"));
+        storage.durabilityBarrier().join();
+
+        try (FileWriter writer = new FileWriter(tempFileLog, true)) {
+            writer.write("{\"operation\":\"REGISTER_USER\",\"payl");
+        }
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        assertEquals(1, reloaded.getUsers().size());
+    }
+
+    @Test
+    void testCorruptRecordInTheMiddleFailsReplayAndKeepsTheLog() throws UserAlreadyExistsException, IOException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        storage.register(new User("tempName", "tempPass"));
+        storage.durabilityBarrier().join();
+        try (FileWriter writer = new FileWriter(tempFileLog, true)) {
+            writer.write("{\"operation\":\"REGISTER_USER\",\"payl" + System.lineSeparator());
+        }
+        storage.register(new User("otherName", "otherPass"));
+        storage.durabilityBarrier().join();
+        long length = tempFileLog.length();
+
+        UncheckedIOException failure = assertThrows(UncheckedIOException.class, () ->
+                Database.getInstanceWithCustomFile(tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED));
+        assertTrue(failure.getMessage().contains(tempFileLog.getName()), "the error should name the segment");
+        assertEquals(length, tempFileLog.length(), "the records after a corrupt one must not be truncated");
+    }
+
+    @Test
+    void testRecordsAfterATornTailSurviveTheNextRestart() throws UserAlreadyExistsException, IOException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        storage.register(new User("tempName", "tempPass"));
+        storage.durabilityBarrier().join();
+        long completeBytes = tempFileLog.length();
+
+        try (FileWriter writer = new FileWriter(tempFileLog, true)) {
+            writer.write("{\"operation\":\"REGISTER_USER\",\"payl");
+        }
+
+        Storage restarted = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        assertEquals(completeBytes, tempFileLog.length(), "the torn tail must be cut off");
+        restarted.register(new User("otherName", "otherPass"));
+        restarted.durabilityBarrier().join();
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        assertEquals(2, WriteAheadLog.replaySegment(tempFileLog, record -> { }));
+        assertNotNull(reloaded.getCurrentUser("tempName"));
+        assertNotNull(reloaded.getCurrentUser("otherName"));
+    }
+
+    @Test
+    void testSnapshotModeFoldsLeftoverLog() throws UserAlreadyExistsException {
+        Storage storage = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.WAL, CompactionPolicy.DISABLED);
+        storage.register(new User("tempName", "tempPass"));
+        storage.durabilityBarrier().join();
+
+        Storage reloaded = Database.getInstanceWithCustomFile(
+                tempFileData, PersistenceMode.SNAPSHOT, CompactionPolicy.DISABLED);
+
+        assertNotNull(reloaded.getCurrentUser("tempName"));
+        assertFalse(tempFileLog.exists());
+        assertTrue(tempFileData.length() > 0);
+    }
+
+    @Test
+    void testSyncAcknowledgesAfterRecordIsOnDisk() {
+        WriteAheadLog log = new WriteAheadLog(tempFileLog, DurabilityPolicy.of(Durability.SYNC));
+        CompletableFuture<Void> acknowledgement =
+                log.append(new LogRecord(LogRecord.Operation.DELETE_COLLABORATION, new JsonPrimitive("name")));
+
+        acknowledgement.join();
+        assertTrue(tempFileLog.length() > 0);
+        assertTrue(log.barrier().isDone());
+        log.close();
+    }
+
+    @Test
+    void testBarrierFailsAfterAFailedBatchEvenWhenLaterOnesSucceed() throws IOException {
+        // a directory cannot be opened for appending, the first batch fails
+        Path path = Files.createTempDirectory("tempLog");
+        GroupCommitWriter writer = new GroupCommitWriter(path, DurabilityPolicy.of(Durability.SYNC));
+        try {
+            CompletableFuture<Void> failed = writer.append(ByteBuffer.wrap("first\n".getBytes(StandardCharsets.UTF_8)));
+            assertThrows(CompletionException.class, failed::join);
+
+            Files.delete(path);
+            writer.append(ByteBuffer.wrap("second\n".getBytes(StandardCharsets.UTF_8))).join();
+
+            assertThrows(CompletionException.class, () -> writer.barrier().join(),
+                    "the barrier must not report the failed batch as durable");
+        } finally {
+            writer.close();
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    void testAsyncAcknowledgesImmediately() {
+        WriteAheadLog log = new WriteAheadLog(tempFileLog, DurabilityPolicy.of(Durability.ASYNC));
+
+        assertTrue(log.append(
+                new LogRecord(LogRecord.Operation.DELETE_COLLABORATION, new JsonPrimitive("name"))).isDone());
+        log.close();
+        assertEquals(1, WriteAheadLog.replaySegment(tempFileLog, record -> { }));
+    }
+
+    @Test
+    void testBatchedGroupsManyRecords() {
+        WriteAheadLog log = new WriteAheadLog(tempFileLog, DurabilityPolicy.of(Durability.BATCHED));
+        for (int i = 0; i < 1000; i++) {
+            log.append(new LogRecord(LogRecord.Operation.DELETE_COLLABORATION, new JsonPrimitive("name" + i)));
+        }
+
+        log.barrier().join();
+        assertEquals(1000, WriteAheadLog.replaySegment(tempFileLog, record -> { }));
+        log.close();
+    }
+}
@@ -0,0 +1,128 @@
+package todolist.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.messagesstatus.StatusMessages;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AsyncClientTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private FakeServer server;
+
+    private AsyncClient client;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new FakeServer();
+        client = new AsyncClient("localhost", server.port());
+    }
+
+    @AfterEach
+    public void resetDown() throws IOException {
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testPipelinedCommandsCompleteWithTheirOwnReplies() {
+        List<CompletableFuture<String>> replies = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            replies.add(client.send("add-task t" + i));
+        }
+
+        for (int i = 0; i < replies.size(); i++) {
+            assertEquals("{\"status\": \"SUCCESS\", \"message\": \"add-task t" + i + "\"}", await(replies.get(i)),
+                    "Every reply should complete the future of the command it answers");
+        }
+    }
+
+    @Test
+    public void testEventsGoToTheListenerNotToAReply() {
+        List<String> events = new CopyOnWriteArrayList<>();
+        client.setEventListener(events::add);
+
+        String reply = await(client.send("push task finished"));
+
+        assertEquals("{\"status\": \"SUCCESS\", \"message\": \"push task finished\"}", reply,
+                "A pushed event should not be taken as the reply");
+        assertEquals(List.of("task finished"), events, "The event should be handed to the listener");
+    }
+
+    @Test
+    public void testBrokenConnectionFailsPendingCommandsAndLogsInAgain() throws Exception {
+        assertTrue(StatusMessages.SUCCESS.isStatusOf(await(client.login("user", "userPass1"))));
+        CompletableFuture<String> held = client.send("hold");
+        awaitRequests("hold", 1);
+
+        server.dropConnections();
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> await(held),
+                "A command on the broken connection should fail");
+        assertInstanceOf(IOException.class, failure.getCause());
+        awaitRequests("login user userPass1", 2);
+        assertEquals("{\"status\": \"SUCCESS\", \"message\": \"list-tasks\"}", await(client.send("list-tasks")),
+                "Commands should go out again after the reconnect");
+    }
+
+    @Test
+    public void testNoLoginAfterReconnectWhenLoginWasRefused() throws Exception {
+        assertTrue(StatusMessages.ERROR.isStatusOf(await(client.login("user", "wrong"))));
+
+        server.dropConnections();
+        awaitReconnected();
+
+        assertEquals(1, server.count("login user wrong"), "A refused login should not be repeated");
+    }
+
+    @Test
+    public void testClosedClientFailsCommands() {
+        client.close();
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> await(client.send("list-tasks")),
+                "A closed client should not send commands");
+        assertInstanceOf(IOException.class, failure.getCause());
+    }
+
+    // the commands sent after a dropped connection may still hit it before the client notices
+    private void awaitReconnected() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (System.nanoTime() < deadline) {
+            try {
+                await(client.send("ping"));
+                return;
+            } catch (CompletionException e) {
+                Thread.sleep(10);
+            }
+        }
+        throw new AssertionError("The client did not reconnect");
+    }
+
+    private void awaitRequests(String request, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (server.count(request) < count) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("The server did not get " + count + " times " + request);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static String await(CompletableFuture<String> reply) {
+        return reply.orTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+    }
+}
@@ -0,0 +1,119 @@
+package todolist.server;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ClientPoolTest {
+
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private FakeServer server;
+
+    private ClientPool pool;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = new FakeServer();
+        pool = new ClientPool("localhost", server.port(), 2);
+    }
+
+    @AfterEach
+    public void resetDown() throws IOException {
+        pool.close();
+        server.close();
+    }
+
+    @Test
+    public void testCommandsOfAUserShareOneLogin() {
+        AsyncClient first = await(pool.connectionFor("first", "firstPass1"));
+
+        assertEquals("{\"status\": \"SUCCESS\", \"message\": \"list-tasks\"}",
+                await(pool.send("first", "firstPass1", "list-tasks")));
+        assertSame(first, await(pool.connectionFor("first", "firstPass1")), "The connection should be reused");
+        assertEquals(1, server.count("login first firstPass1"), "The user should be logged in once");
+    }
+
+    @Test
+    public void testLeastRecentlyUsedConnectionIsEvicted() throws InterruptedException {
+        AsyncClient first = await(pool.connectionFor("first", "firstPass1"));
+        await(pool.connectionFor("second", "secondPass1"));
+        await(pool.connectionFor("first", "firstPass1"));
+
+        await(pool.connectionFor("third", "thirdPass1"));
+
+        awaitRequests("logout", 1);
+        assertSame(first, await(pool.connectionFor("first", "firstPass1")),
+                "The connection used last should stay open");
+        AsyncClient second = await(pool.connectionFor("second", "secondPass1"));
+        assertEquals(2, server.count("login second secondPass1"), "The evicted user should be logged in again");
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void testSlowLoginDoesNotHoldUpOtherUsers() {
+        await(pool.connectionFor("first", "firstPass1"));
+        server.holdLogins();
+
+        CompletableFuture<AsyncClient> slow = pool.connectionFor("slow", "slowPass1");
+        CompletableFuture<AsyncClient> slowAgain = pool.connectionFor("slow", "slowPass1");
+
+        assertFalse(slow.isDone(), "The login should not be answered yet");
+        assertSame(slow, slowAgain, "Callers for the same user should wait on the same login");
+        assertEquals("{\"status\": \"SUCCESS\", \"message\": \"list-tasks\"}",
+                await(pool.send("first", "firstPass1", "list-tasks")),
+                "Other users should not wait for the login");
+
+        server.releaseLogins();
+        await(slow);
+        assertEquals(1, server.count("login slow slowPass1"), "The user should be logged in once");
+    }
+
+    @Test
+    public void testRefusedLoginIsTriedAgain() {
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> await(pool.send("first", "wrong", "list-tasks")));
+        assertInstanceOf(IOException.class, failure.getCause());
+
+        assertThrows(CompletionException.class, () -> await(pool.send("first", "wrong", "list-tasks")));
+        assertEquals(2, server.count("login first wrong"), "A refused login should not be kept");
+    }
+
+    @Test
+    public void testClosedPoolRefusesCommands() throws InterruptedException {
+        await(pool.connectionFor("first", "firstPass1"));
+
+        pool.close();
+
+        awaitRequests("logout", 1);
+        CompletionException failure = assertThrows(CompletionException.class,
+                () -> await(pool.send("first", "firstPass1", "list-tasks")));
+        assertInstanceOf(IOException.class, failure.getCause());
+    }
+
+    private void awaitRequests(String request, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(TIMEOUT_SECONDS);
+        while (server.count(request) < count) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("The server did not get " + count + " times " + request);
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        return future.orTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS).join();
+    }
+}
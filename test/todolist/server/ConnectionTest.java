@@ -0,0 +1,144 @@
+package todolist.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.command.Command;
+import todolist.response.Response;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static todolist.command.CommandsList.ADD_TASK;
+import static todolist.command.CommandsList.LIST_TASKS;
+import static todolist.command.CommandsList.LOGIN;
+import static todolist.command.CommandsList.LOGOUT;
+
+public class ConnectionTest {
+
+    // what the client sent and the connection has not read yet
+    private final Deque<ByteBuffer> input = new ArrayDeque<>();
+
+    private Connection connection;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        SocketChannel mockClientChannel = mock(SocketChannel.class);
+        when(mockClientChannel.read(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer target = invocation.getArgument(0);
+            ByteBuffer next = input.peek();
+            if (next == null) {
+                return 0;
+            }
+
+            int count = Math.min(next.remaining(), target.remaining());
+            target.put(next.slice(next.position(), count));
+            next.position(next.position() + count);
+            if (!next.hasRemaining()) {
+                input.poll();
+            }
+            return count;
+        });
+        connection = new Connection(mockClientChannel);
+    }
+
+    @Test
+    public void testRequestSplitOverReadsIsParsedOnceComplete() throws IOException {
+        receive("add-task ta");
+        connection.read();
+        assertNull(connection.nextCommand(), "A request without its line end should wait for the rest");
+
+        receive("sk1 1/1/2099\n");
+        connection.read();
+        Command command = connection.nextCommand();
+
+        assertEquals(ADD_TASK, command.command());
+        assertArrayEquals(new String[]{"task1", "1/1/2099"}, command.arguments());
+        assertNull(connection.nextCommand());
+    }
+
+    @Test
+    public void testPipelinedRequestsAreParsedInOrderWithoutCarriageReturns() throws IOException {
+        receive("login user pass\r\nlist-tasks\nlogout\r\n");
+        connection.read();
+
+        Command login = connection.nextCommand();
+        assertEquals(LOGIN, login.command());
+        assertArrayEquals(new String[]{"user", "pass"}, login.arguments());
+        assertEquals(LIST_TASKS, connection.nextCommand().command());
+        assertEquals(LOGOUT, connection.nextCommand().command());
+        assertNull(connection.nextCommand());
+    }
+
+    @Test
+    public void testPartialRequestAfterCompleteOnesIsKept() throws IOException {
+        receive("list-tasks\nlog");
+        connection.read();
+        assertEquals(LIST_TASKS, connection.nextCommand().command());
+        assertNull(connection.nextCommand());
+
+        receive("out\n");
+        connection.read();
+        assertEquals(LOGOUT, connection.nextCommand().command());
+    }
+
+    @Test
+    public void testRequestLargerThanTheBufferGrowsIt() throws IOException {
+        String name = "t".repeat(5000);
+        receive("add-task " + name + " 1/1/2099\n");
+
+        Command command = null;
+        while (command == null) {
+            assertTrue(connection.read() > 0, "The whole request should fit once the buffer has grown");
+            command = connection.nextCommand();
+        }
+
+        assertEquals(name, command.arguments()[0]);
+    }
+
+    @Test
+    public void testRequestOverTheLimitFails() {
+        receive("x".repeat(Connection.MAX_REQUEST_SIZE + 1));
+
+        assertThrows(IOException.class, () -> {
+            while (true) {
+                connection.read();
+                assertNull(connection.nextCommand());
+            }
+        });
+    }
+
+    @Test
+    public void testResponsesAreQueuedInRequestOrder() {
+        Response first = Response.of("first");
+        Response second = Response.of("second");
+        Response third = Response.of("third");
+
+        connection.complete(2, third);
+        connection.complete(1, second);
+        assertNull(connection.nextResponse(), "Later responses should wait for the first one");
+
+        connection.complete(0, first);
+        for (Response expected : new Response[]{first, second, third}) {
+            assertSame(expected, connection.nextResponse());
+            connection.responseWritten();
+        }
+        assertNull(connection.nextResponse());
+    }
+
+    private void receive(String text) {
+        input.add(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,108 @@
+package todolist.server;
+
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+// A server on a free local port that answers every request line with a SUCCESS reply carrying the line,
+// framed like the real server does. A login with the password "wrong" is refused, "hold" is never answered
+// and "push <event>" pushes the event before its reply. Every line it got is kept in requests.
+class FakeServer implements AutoCloseable {
+    private final ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    private final List<Socket> sockets = new CopyOnWriteArrayList<>();
+    final List<String> requests = new CopyOnWriteArrayList<>();
+    // logins are answered once it is counted down
+    private volatile CountDownLatch loginGate = new CountDownLatch(0);
+
+    FakeServer() throws IOException {
+        Thread acceptor = new Thread(this::accept, "fake-server");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    void holdLogins() {
+        loginGate = new CountDownLatch(1);
+    }
+
+    void releaseLogins() {
+        loginGate.countDown();
+    }
+
+    // closes the connections from the server side, the listening socket stays open
+    void dropConnections() throws IOException {
+        for (Socket socket : new ArrayList<>(sockets)) {
+            socket.close();
+        }
+    }
+
+    long count(String request) {
+        return requests.stream().filter(request::equals).count();
+    }
+
+    private void accept() {
+        try {
+            while (true) {
+                Socket socket = serverSocket.accept();
+                sockets.add(socket);
+                Thread handler = new Thread(() -> serve(socket), "fake-server-connection");
+                handler.setDaemon(true);
+                handler.start();
+            }
+        } catch (IOException e) {
+            // the server is closed
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (socket) {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            String line;
+            while ((line = in.readLine()) != null) {
+                requests.add(line);
+                if (line.equals("hold")) {
+                    continue;
+                }
+                if (line.startsWith("push ")) {
+                    write(out, FrameEncoder.EVENT_FRAME, line.substring("push ".length()));
+                }
+                if (line.startsWith("login ")) {
+                    loginGate.await();
+                }
+
+                String status = line.startsWith("login ") && line.endsWith(" wrong") ? "ERROR" : "SUCCESS";
+                write(out, 0, "{\"status\": \"" + status + "\", \"message\": \"" + line + "\"}");
+            }
+        } catch (IOException | InterruptedException e) {
+            // the connection is dropped
+        } finally {
+            sockets.remove(socket);
+        }
+    }
+
+    private static void write(DataOutputStream out, int flags, String message) throws IOException {
+        byte[] payload = message.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(flags | payload.length);
+        out.write(payload);
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        dropConnections();
+    }
+}
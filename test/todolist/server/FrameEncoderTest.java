@@ -0,0 +1,178 @@
+package todolist.server;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import todolist.response.Event;
+import todolist.response.Response;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FrameEncoderTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    // the most the client takes in one write
+    private int maxWrite = Integer.MAX_VALUE;
+
+    private SocketChannel mockClientChannel;
+
+    private Connection connection;
+
+    private final FrameEncoder encoder = new FrameEncoder();
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        mockClientChannel = mock(SocketChannel.class);
+        when(mockClientChannel.write(any(ByteBuffer.class))).thenAnswer(invocation -> {
+            ByteBuffer source = invocation.getArgument(0);
+            byte[] taken = new byte[Math.min(source.remaining(), maxWrite)];
+            source.get(taken);
+            output.write(taken);
+            return taken.length;
+        });
+        connection = new Connection(mockClientChannel);
+    }
+
+    @Test
+    public void testSmallResponsesGoOutInOneWrite() throws IOException {
+        connection.complete(0, Response.of("first"));
+        connection.complete(1, Response.of("second"));
+
+        assertTrue(connection.flush(encoder));
+
+        List<Frame> frames = frames();
+        assertEquals(2, frames.size());
+        assertEquals(0, frames.get(0).flags());
+        assertEquals(0, frames.get(1).flags());
+        assertEquals(List.of("first", "second"), messages(frames));
+        verify(mockClientChannel, times(1)).write(any(ByteBuffer.class));
+    }
+
+    @Test
+    public void testResponseLongerThanAChunkGoesOnInMoreFrames() throws IOException {
+        // two and three byte characters end up split at chunk boundaries
+        String text = "task \u00e9\u4e2d ".repeat(20_000);
+        connection.complete(0, Response.of(text));
+
+        assertTrue(connection.flush(encoder));
+
+        List<Frame> frames = frames();
+        assertTrue(frames.size() > 2, "A response of " + text.length() + " chars should span chunks");
+        for (int i = 0; i < frames.size(); i++) {
+            boolean isLast = i == frames.size() - 1;
+            assertEquals(isLast ? 0 : FrameEncoder.MORE_FRAMES, frames.get(i).flags());
+            assertTrue(frames.get(i).payload().length <= CHUNK_SIZE - Integer.BYTES);
+        }
+        assertEquals(List.of(text), messages(frames));
+    }
+
+    @Test
+    public void testResponseRenderedPieceByPieceSpansChunks() throws IOException {
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            expected.append("Name : task").append(i).append('\n');
+        }
+        connection.complete(0, pieces(20_000));
+        connection.complete(1, Response.of("after"));
+
+        assertTrue(connection.flush(encoder));
+
+        assertEquals(List.of(expected.toString(), "after"), messages(frames()));
+    }
+
+    @Test
+    public void testSlowClientGetsTheRestOnLaterFlushes() throws IOException {
+        String text = "x".repeat(3 * CHUNK_SIZE);
+        connection.complete(0, Response.of(text));
+        maxWrite = 1000;
+
+        assertFalse(connection.flush(encoder), "A client taking 1000 bytes at a time should leave output pending");
+        int flushes = 1;
+        while (!connection.flush(encoder)) {
+            flushes++;
+            assertTrue(flushes < 1000, "The output should be written eventually");
+        }
+
+        assertEquals(List.of(text), messages(frames()));
+    }
+
+    @Test
+    public void testEventFramesAreFlagged() throws IOException {
+        String event = "assign-task-collaboration team user " + "t".repeat(2 * CHUNK_SIZE);
+        connection.push(new Event(event).frame());
+        connection.complete(0, Response.of("reply"));
+
+        assertTrue(connection.flush(encoder));
+
+        List<Frame> frames = frames();
+        Frame reply = frames.remove(frames.size() - 1);
+        assertEquals(0, reply.flags());
+        for (int i = 0; i < frames.size(); i++) {
+            assertTrue((frames.get(i).flags() & FrameEncoder.EVENT_FRAME) != 0, "Every frame of an event is flagged");
+            assertEquals(i < frames.size() - 1, (frames.get(i).flags() & FrameEncoder.MORE_FRAMES) != 0);
+        }
+        frames.add(reply);
+        assertEquals(List.of(event, "reply"), messages(frames));
+    }
+
+    private static Response pieces(int count) {
+        return new Response() {
+            private int next;
+
+            @Override
+            public boolean renderNext(StringBuilder sink) {
+                if (next == count) {
+                    return false;
+                }
+                sink.append("Name : task").append(next++).append('\n');
+                return true;
+            }
+        };
+    }
+
+    private List<Frame> frames() {
+        ByteBuffer written = ByteBuffer.wrap(output.toByteArray());
+        List<Frame> frames = new ArrayList<>();
+        while (written.hasRemaining()) {
+            int prefix = written.getInt();
+            byte[] payload = new byte[prefix & FrameEncoder.LENGTH_MASK];
+            written.get(payload);
+            frames.add(new Frame(prefix & ~FrameEncoder.LENGTH_MASK, payload));
+        }
+        return frames;
+    }
+
+    // the frames joined into the messages they carry
+    private static List<String> messages(List<Frame> frames) {
+        List<String> messages = new ArrayList<>();
+        ByteArrayOutputStream message = new ByteArrayOutputStream();
+        for (Frame frame : frames) {
+            message.writeBytes(frame.payload());
+            if ((frame.flags() & FrameEncoder.MORE_FRAMES) == 0) {
+                messages.add(message.toString(StandardCharsets.UTF_8));
+                message.reset();
+            }
+        }
+        return messages;
+    }
+
+    private record Frame(int flags, byte[] payload) {
+    }
+}